@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot;
+
+import org.cascadebot.cascadebot.commandmeta.ArgumentManager;
+import org.cascadebot.cascadebot.commandmeta.CommandManager;
+import org.cascadebot.cascadebot.data.Config;
+import org.cascadebot.cascadebot.permissions.PermissionsManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+
+/**
+ * Sets up just enough of the bot for benchmarks to run: a config with no official server and the managers
+ * that don't need Discord or the database, including the command manager with all of the real commands loaded.
+ */
+public final class BenchmarkEnvironment {
+
+    private static final String CONFIG = String.join("\n",
+            "bot:",
+            "  id: 1",
+            "  token: benchmark",
+            "database:",
+            "  connection_string: mongodb://localhost",
+            "security_levels:",
+            "  developer: []",
+            "");
+
+    private static boolean initialised = false;
+
+    private BenchmarkEnvironment() {
+    }
+
+    public static synchronized void init() {
+        if (initialised) return;
+        try {
+            File config = File.createTempFile("cascade-benchmark", ".yml");
+            config.deleteOnExit();
+            Files.writeString(config.toPath(), CONFIG);
+            Config.init(config);
+
+            setManager("argumentManager", new ArgumentManager());
+            setManager("permissionsManager", new PermissionsManager());
+            setManager("commandManager", new CommandManager());
+        } catch (IOException | ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not set up the benchmark environment!", e);
+        }
+        initialised = true;
+    }
+
+    private static void setManager(String name, Object manager) throws ReflectiveOperationException {
+        Field field = CascadeBot.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(CascadeBot.INS, manager);
+    }
+
+}
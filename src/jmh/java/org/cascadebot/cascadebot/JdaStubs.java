@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Creates stand-ins for JDA's entity interfaces so benchmarks can run without a connection to Discord.
+ * <p>
+ * A stub answers the methods given to it by name. An answer can either be a value or a {@link Function} that
+ * is given the method arguments. Every other method returns null, false or zero, and equality is by identity.
+ */
+public final class JdaStubs {
+
+    private JdaStubs() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> T stub(Class<T> type, Map<String, Object> answers) {
+        return (T) Proxy.newProxyInstance(JdaStubs.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            String name = method.getName();
+            if (answers.containsKey(name)) {
+                Object answer = answers.get(name);
+                if (answer instanceof Function) {
+                    return ((Function<Object[], Object>) answer).apply(args == null ? new Object[0] : args);
+                }
+                return answer;
+            }
+            switch (name) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return type.getSimpleName() + "Stub";
+            }
+            Class<?> returnType = method.getReturnType();
+            if (!returnType.isPrimitive() || returnType == void.class) return null;
+            // The only element of a new primitive array is that primitive's default value
+            return Array.get(Array.newInstance(returnType, 1), 0);
+        });
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.commandmeta;
+
+import org.cascadebot.cascadebot.BenchmarkEnvironment;
+import org.cascadebot.cascadebot.CascadeBot;
+import org.cascadebot.cascadebot.data.language.Locale;
+import org.cascadebot.cascadebot.data.objects.GuildData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up triggers for a guild with the bot's real commands, through the guild's trigger index and through the
+ * scan over every command and its aliases that the index replaced. Building the index is what the first lookup
+ * after a guild's commands or locale change costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CommandLookupBenchmark {
+
+    @Param({"first", "last", "alias", "missing"})
+    public String lookup;
+
+    private CommandManager commandManager;
+    private GuildData guildData;
+    private Locale locale;
+    private String trigger;
+
+    @Setup
+    public void setup() {
+        BenchmarkEnvironment.init();
+        commandManager = CascadeBot.INS.getCommandManager();
+        guildData = new GuildData(1);
+        locale = guildData.getLocale();
+
+        List<ICommandMain> commands = commandManager.getCommands();
+        switch (lookup) {
+            case "first":
+                trigger = commands.get(0).command(locale);
+                break;
+            case "last":
+                trigger = commands.get(commands.size() - 1).command(locale);
+                break;
+            case "alias":
+                // An alias from the middle of the list, so the scan has to check half of the commands first
+                trigger = commands.subList(commands.size() / 2, commands.size()).stream()
+                        .filter(command -> !command.getGlobalAliases(locale).isEmpty())
+                        .findFirst()
+                        .map(command -> command.getGlobalAliases(locale).iterator().next())
+                        .orElseThrow(() -> new IllegalStateException("No command has an alias!"));
+                break;
+            default:
+                trigger = "notacommand";
+        }
+        // Build the index now so the lookups measure a warm index
+        commandManager.getCommand(trigger, guildData);
+    }
+
+    @Benchmark
+    public ICommandMain triggerIndex() {
+        return commandManager.getCommand(trigger, guildData);
+    }
+
+    @Benchmark
+    public ICommandMain linearScan() {
+        return commandManager.getCommand(trigger, locale);
+    }
+
+    @Benchmark
+    public CommandTriggerIndex buildTriggerIndex() {
+        return commandManager.buildTriggerIndex(guildData, 0);
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.commandmeta;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CommandParsingBenchmark {
+
+    @Param({
+            ";help",
+            ";queue save \"my playlist\" guild",
+            ";tag create welcome \"Welcome to the server {sender:mention}! Please read the rules in #rules before posting.\"",
+            ";purge user 100 <@123456789012345678> <@234567890123456789> <@345678901234567890> --silent"
+    })
+    public String message;
+
+    @Benchmark
+    public String parseTrigger() {
+        return CommandArgs.parse(message, 1).get(0);
+    }
+
+    @Benchmark
+    public CommandArgs parseSubCommand() {
+        // What the command listener does for a sub-command: drop the trigger then the sub-command
+        CommandArgs args = CommandArgs.parse(message, 1).skip(1);
+        return args.isEmpty() ? args : args.skip(1);
+    }
+
+    @Benchmark
+    public String getMessage() {
+        CommandArgs args = CommandArgs.parse(message, 1).skip(1);
+        return args.getContent(0, args.size());
+    }
+
+}
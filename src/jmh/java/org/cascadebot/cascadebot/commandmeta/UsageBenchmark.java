@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.commandmeta;
+
+import org.cascadebot.cascadebot.BenchmarkEnvironment;
+import org.cascadebot.cascadebot.data.language.Locale;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering usage from a warm argument tree against rendering it from a fresh tree, which is what every
+ * usage message cost before the rendered usage was cached.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UsageBenchmark {
+
+    private Argument cached;
+
+    @Setup
+    public void setup() {
+        BenchmarkEnvironment.init();
+        cached = createArguments();
+        cached.getUsageString(Locale.getDefaultLocale(), ";");
+    }
+
+    @Benchmark
+    public String cachedUsage() {
+        return cached.getUsageString(Locale.getDefaultLocale(), ";tag ");
+    }
+
+    @Benchmark
+    public String uncachedUsage() {
+        return createArguments().getUsageString(Locale.getDefaultLocale(), ";tag ");
+    }
+
+    // Shaped like the tag command's arguments, without needing the command itself to be loaded
+    private static Argument createArguments() {
+        Argument content = new Argument("tag.name.content", ArgumentType.REQUIRED, true, Set.of(), Set.of());
+        Argument category = new Argument("tag.name.category", ArgumentType.REQUIRED, true, Set.of(), Set.of());
+        Argument name = new Argument("tag.name", ArgumentType.REQUIRED, false, Set.of(content, category), Set.of());
+        Argument user = new Argument("tag.user", ArgumentType.OPTIONAL, true, Set.of(), Set.of());
+        Argument channel = new Argument("tag.channel", ArgumentType.OPTIONAL, true, Set.of(), Set.of());
+        return new Argument("tag", ArgumentType.OPTIONAL, true, Set.of(name, user, channel), Set.of("t"));
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.data.objects;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import org.cascadebot.cascadebot.BenchmarkEnvironment;
+import org.cascadebot.cascadebot.JdaStubs;
+import org.cascadebot.cascadebot.permissions.CascadePermission;
+import org.cascadebot.cascadebot.permissions.objects.Group;
+import org.cascadebot.cascadebot.permissions.objects.Result;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Evaluates a permission for a member against a guild set up like one of our larger guilds:
+ * a couple of hundred roles, a few dozen groups linked to them and members with a handful of roles each.
+ * The uncached runs drop the permission cache before every evaluation, which is what the first check for a
+ * member after a role or group change costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GuildPermissionsBenchmark {
+
+    private static final String[] PERMISSIONS = {
+            "queue.save", "queue.load", "volume", "volume.extreme", "skip", "skip.force", "tag.create", "tag.delete",
+            "tag.edit", "purge", "ban", "kick", "module.music", "module.fun", "prefix.set", "queue.*", "tag.*", "-ban", "-skip.force"
+    };
+
+    @Param({"200"})
+    public int roleCount;
+
+    @Param({"5", "30"})
+    public int groupCount;
+
+    @Param({"15"})
+    public int memberRoleCount;
+
+    @Param({"MOST_RESTRICTIVE", "HIERARCHICAL"})
+    public GuildPermissions.PermissionMode mode;
+
+    // Whether results are served from the permission cache or worked out from the groups every time
+    @Param({"true", "false"})
+    public boolean cached;
+
+    private GuildPermissions permissions;
+    private GuildSettingsCore settings;
+    private Member member;
+    private CascadePermission allowed;
+    private CascadePermission notGranted;
+
+    @Setup
+    public void setup() {
+        BenchmarkEnvironment.init();
+        Random random = new Random(42);
+
+        Map<Long, Role> roles = new HashMap<>();
+        for (long id = 1; id <= roleCount; id++) {
+            roles.put(id, JdaStubs.stub(Role.class, Map.of("getIdLong", id)));
+        }
+        Guild guild = JdaStubs.stub(Guild.class, Map.of(
+                "getRoleById", (Function<Object[], Object>) args -> roles.get(Long.parseLong(String.valueOf(args[0])))
+        ));
+
+        List<Role> memberRoles = new ArrayList<>();
+        for (int i = 0; i < memberRoleCount; i++) {
+            memberRoles.add(roles.get((long) random.nextInt(roleCount) + 1));
+        }
+        member = JdaStubs.stub(Member.class, Map.of(
+                "getIdLong", 1000L,
+                "getRoles", List.copyOf(memberRoles),
+                "getGuild", guild
+        ));
+
+        permissions = new GuildPermissions();
+        permissions.setMode(mode);
+        for (int i = 0; i < groupCount; i++) {
+            Group group = permissions.createGroup("Group " + i);
+            for (int j = 0; j < 3; j++) {
+                group.linkRole(random.nextInt(roleCount) + 1);
+            }
+            for (int j = 0; j < 8; j++) {
+                group.addPermission(PERMISSIONS[random.nextInt(PERMISSIONS.length)]);
+            }
+        }
+        permissions.getPermissionUser(member).addGroup(permissions.getGroups().get(0));
+        settings = new GuildSettingsCore(1);
+
+        allowed = CascadePermission.of("queue.save", false);
+        notGranted = CascadePermission.of("flags.set", false);
+    }
+
+    @Benchmark
+    public Result evalGrantedPermission() {
+        if (!cached) permissions.invalidateCache();
+        return permissions.evalPermission(member, allowed, settings);
+    }
+
+    @Benchmark
+    public Result evalMissingPermission() {
+        if (!cached) permissions.invalidateCache();
+        return permissions.evalPermission(member, notGranted, settings);
+    }
+
+    @Benchmark
+    public List<Group> getUserGroups() {
+        return permissions.getUserGroups(member);
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.data.objects;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.entities.User;
+import org.cascadebot.cascadebot.JdaStubs;
+import org.cascadebot.cascadebot.commandmeta.CommandArgs;
+import org.cascadebot.cascadebot.commandmeta.CommandContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TagBenchmark {
+
+    @Param({
+            "Please read the rules before posting, thanks!",
+            "Welcome to {server}, {sender:mention}! Please read the rules in {channel:mention} before posting.",
+            "{sender:name} ({sender:id}) asked about {server:id} in {channel} of {server}. Ping {sender:mention} for help."
+    })
+    public String content;
+
+    private Tag tag;
+    private CommandContext context;
+
+    @Setup
+    public void setup() {
+        tag = new Tag(content, "general");
+
+        User user = JdaStubs.stub(User.class, Map.of("getAsTag", "Someone#0001", "getName", "Someone"));
+        Member member = JdaStubs.stub(Member.class, Map.of(
+                "getUser", user,
+                "getId", "123456789012345678",
+                "getAsMention", "<@123456789012345678>"
+        ));
+        Guild guild = JdaStubs.stub(Guild.class, Map.of("getName", "CascadeBot", "getId", "234567890123456789"));
+        TextChannel channel = JdaStubs.stub(TextChannel.class, Map.of("getName", "general", "getAsMention", "<#345678901234567890>"));
+
+        context = new CommandContext(null, null, channel, null, guild, null, CommandArgs.of(), member, "tag", false);
+    }
+
+    @Benchmark
+    public String formatTag() {
+        return tag.formatTag(context);
+    }
+
+}
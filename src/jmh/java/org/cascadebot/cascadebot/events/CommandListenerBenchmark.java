@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.events;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageType;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
+import org.cascadebot.cascadebot.BenchmarkEnvironment;
+import org.cascadebot.cascadebot.JdaStubs;
+import org.cascadebot.cascadebot.data.managers.GuildDataManager;
+import org.cascadebot.cascadebot.data.objects.GuildData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends messages through the command listener for a guild that is already cached: an ordinary chat message, which
+ * is thrown away straight away, and a prefixed message that is parsed and looked up but isn't a command or tag.
+ * Running a real command is left out as it needs a connection to Discord to reply.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CommandListenerBenchmark {
+
+    private static final long GUILD_ID = 1;
+
+    @Param({
+            "Has anyone seen the new episode yet? No spoilers please!",
+            ";notacommand with \"a few\" arguments",
+            "; help"
+    })
+    public String message;
+
+    private CommandListener listener;
+    private GuildMessageReceivedEvent event;
+
+    @Setup
+    public void setup() {
+        BenchmarkEnvironment.init();
+        GuildDataManager.getGuilds().put(GUILD_ID, new GuildData(GUILD_ID));
+
+        Guild guild = JdaStubs.stub(Guild.class, Map.of("getIdLong", GUILD_ID, "getId", String.valueOf(GUILD_ID)));
+        TextChannel channel = JdaStubs.stub(TextChannel.class, Map.of("canTalk", true, "getGuild", guild));
+        User user = JdaStubs.stub(User.class, Map.of("getAsTag", "Someone#0001"));
+        Member member = JdaStubs.stub(Member.class, Map.of("getUser", user, "getGuild", guild));
+        Message discordMessage = JdaStubs.stub(Message.class, Map.of(
+                "getContentRaw", message,
+                "getType", MessageType.DEFAULT,
+                "getTextChannel", channel,
+                "getChannel", channel,
+                "getGuild", guild,
+                "getAuthor", user,
+                "getMember", member
+        ));
+        JDA jda = JdaStubs.stub(JDA.class, Map.of("getShardInfo", new JDA.ShardInfo(0, 1)));
+
+        listener = new CommandListener();
+        event = new GuildMessageReceivedEvent(jda, 0, discordMessage);
+    }
+
+    @Benchmark
+    public void onGuildMessageReceived() {
+        listener.onGuildMessageReceived(event);
+    }
+
+}
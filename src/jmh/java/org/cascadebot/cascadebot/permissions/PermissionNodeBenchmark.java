@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.permissions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PermissionNodeBenchmark {
+
+    @Param({"*", "queue.save", "queue.*", "*.save", "tag.*.edit"})
+    public String node;
+
+    @Param({"queue.save", "tag.category.edit", "volume.extreme"})
+    public String permission;
+
+    private PermissionNode permissionNode;
+
+    @Setup
+    public void setup() {
+        permissionNode = new PermissionNode(node);
+    }
+
+    @Benchmark
+    public boolean test() {
+        return permissionNode.test(permission);
+    }
+
+}
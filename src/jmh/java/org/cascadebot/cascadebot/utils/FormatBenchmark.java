@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.utils;
+
+import org.cascadebot.cascadebot.utils.pagination.PageUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FormatBenchmark {
+
+    // Roughly a help page, a queue and a full server's role list
+    @Param({"20", "100", "500"})
+    public int rows;
+
+    private String text;
+    private List<String> headers;
+    private List<List<String>> table;
+
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder();
+        table = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            builder.append("`;command").append(i).append("` - Does something useful with argument number ").append(i).append('\n');
+            table.add(List.of(String.valueOf(i), "Role number " + i, String.valueOf(i * 31L % 1000), i % 2 == 0 ? "Yes" : "No"));
+        }
+        text = builder.toString();
+        headers = List.of("Position", "Name", "Members", "Mentionable");
+    }
+
+    @Benchmark
+    public List<String> splitString() {
+        return PageUtils.splitString(text, 1800, '\n');
+    }
+
+    @Benchmark
+    public String makeAsciiTable() {
+        return FormatUtils.makeAsciiTable(headers, table, "Page 1");
+    }
+
+}
@@ -30,6 +30,13 @@ import org.cascadebot.cascadebot.commandmeta.ArgumentManager;
 import org.cascadebot.cascadebot.commandmeta.CommandManager;
 import org.cascadebot.cascadebot.data.Config;
 import org.cascadebot.cascadebot.data.database.DatabaseManager;
+import org.cascadebot.cascadebot.data.database.GuildDataStore;
+import org.cascadebot.cascadebot.data.database.MemoryGuildDataStore;
+import org.cascadebot.cascadebot.data.database.MemoryPlaylistStore;
+import org.cascadebot.cascadebot.data.database.MongoGuildDataStore;
+import org.cascadebot.cascadebot.data.database.MongoPlaylistStore;
+import org.cascadebot.cascadebot.data.database.PlaylistStore;
+import org.cascadebot.cascadebot.data.database.StorageBackend;
 import org.cascadebot.cascadebot.data.managers.GuildDataManager;
 import org.cascadebot.cascadebot.events.ButtonEventListener;
 import org.cascadebot.cascadebot.events.CommandListener;
@@ -51,6 +58,7 @@ import org.slf4j.MDC;
 import javax.annotation.Nonnull;
 import javax.security.auth.login.LoginException;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Scanner;
 import java.util.concurrent.TimeUnit;
@@ -68,6 +76,8 @@ public class CascadeBot {
     private ArgumentManager argumentManager;
     private CommandManager commandManager;
     private DatabaseManager databaseManager;
+    private GuildDataStore guildDataStore;
+    private PlaylistStore playlistStore;
     private PermissionsManager permissionsManager;
     private ModerationManager moderationManager;
     private OkHttpClient httpClient;
@@ -158,17 +168,9 @@ public class CascadeBot {
             builder.setPrettyPrinting();
         }
 
-        if (Config.INS.getConnectionString() != null) {
-            databaseManager = new DatabaseManager(Config.INS.getConnectionString());
-        } else {
-            databaseManager = new DatabaseManager(
-                    Config.INS.getUsername(),
-                    Config.INS.getPassword(),
-                    Config.INS.getDatabase(),
-                    Config.INS.getHosts(),
-                    Config.INS.isSsl()
-            );
-        }
+        setupStorage();
+        GuildDataManager.restoreUnsaved(Paths.get(Config.INS.getUnsavedGuildsFile()));
+        GuildDataManager.startInvalidation();
 
         musicHandler = new MusicHandler(this);
         musicHandler.buildMusic();
@@ -213,6 +215,7 @@ public class CascadeBot {
         argumentManager = new ArgumentManager();
         argumentManager.initArguments();
         commandManager = new CommandManager();
+        argumentManager.cacheUsage();
         permissionsManager = new PermissionsManager();
         permissionsManager.registerPermissions();
         moderationManager = new ModerationManager();
@@ -235,6 +238,38 @@ public class CascadeBot {
 
     }
 
+    private void setupStorage() {
+        if (Config.INS.getStorageBackend() == StorageBackend.MEMORY) {
+            if (Config.INS.getStorageFile() == null) {
+                guildDataStore = new MemoryGuildDataStore();
+            } else {
+                try {
+                    guildDataStore = new MemoryGuildDataStore(Paths.get(Config.INS.getStorageFile()));
+                } catch (IOException e) {
+                    LOGGER.error("Could not open the guild storage file!", e);
+                    ShutdownHandler.exitWithError();
+                    return;
+                }
+            }
+            playlistStore = new MemoryPlaylistStore();
+            return;
+        }
+
+        if (Config.INS.getConnectionString() != null) {
+            databaseManager = new DatabaseManager(Config.INS.getConnectionString());
+        } else {
+            databaseManager = new DatabaseManager(
+                    Config.INS.getUsername(),
+                    Config.INS.getPassword(),
+                    Config.INS.getDatabase(),
+                    Config.INS.getHosts(),
+                    Config.INS.isSsl()
+            );
+        }
+        guildDataStore = new MongoGuildDataStore(GuildDataManager.COLLECTION);
+        playlistStore = new MongoPlaylistStore("playlists");
+    }
+
     private void setupTasks() {
         new Task("prune-players") {
             @Override
@@ -290,6 +325,14 @@ public class CascadeBot {
         return databaseManager;
     }
 
+    public GuildDataStore getGuildDataStore() {
+        return guildDataStore;
+    }
+
+    public PlaylistStore getPlaylistStore() {
+        return playlistStore;
+    }
+
     public PermissionsManager getPermissionsManager() {
         return permissionsManager;
     }
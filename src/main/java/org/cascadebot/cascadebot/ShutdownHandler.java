@@ -8,6 +8,7 @@ package org.cascadebot.cascadebot;
 import lombok.experimental.UtilityClass;
 import org.cascadebot.cascadebot.commands.developer.EvalCommand;
 import org.cascadebot.cascadebot.data.Config;
+import org.cascadebot.cascadebot.data.managers.GuildDataFlusher;
 import org.cascadebot.cascadebot.data.managers.GuildDataManager;
 import org.cascadebot.cascadebot.events.CommandListener;
 import org.cascadebot.cascadebot.tasks.Task;
@@ -59,9 +60,15 @@ public class ShutdownHandler {
     private static void shutdown() {
         CascadeBot.LOGGER.info("Bot shutting down gracefully!");
         long startTime = System.currentTimeMillis(); // Ensures all data is saved before exiting
-        GuildDataManager.getGuilds().asMap().forEach(GuildDataManager::replaceSync);
-        CascadeBot.LOGGER.info("Took " + (System.currentTimeMillis() - startTime) + "ms to save!");
-        Config.INS.getEventWebhook().send("\u2705 Shutting down gracefully! Took " + (System.currentTimeMillis() - startTime) + "ms to save!").join();
+        GuildDataFlusher.ShutdownResult result = GuildDataManager.flushAll();
+        long took = System.currentTimeMillis() - startTime;
+        CascadeBot.LOGGER.info("Took {}ms to save {} guilds ({} unchanged, {} failed)!", took, result.getSaved(), result.getUnchanged(), result.getFailed());
+        if (result.getFailed() == 0) {
+            Config.INS.getEventWebhook().send("\u2705 Shutting down gracefully! Took " + took + "ms to save " + result.getSaved() + " guilds!").join();
+        } else {
+            Config.INS.getEventWebhook().send("\u26A0 Shutting down! Took " + took + "ms to save " + result.getSaved() + " guilds, " + result.getFailed() + " guilds could not be saved"
+                    + (result.isSavedToFile() ? " and were written to " + Config.INS.getUnsavedGuildsFile() + "!" : " and have been lost!")).join();
+        }
         EvalCommand.shutdownEvalPool();
         CommandListener.shutdownCommandPool();
         Task.shutdownTaskPool();
@@ -5,13 +5,18 @@
 
 package org.cascadebot.cascadebot.commandmeta;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import org.apache.commons.lang3.StringUtils;
 import org.cascadebot.cascadebot.CascadeBot;
 import org.cascadebot.cascadebot.data.language.Language;
 import org.cascadebot.cascadebot.data.language.Locale;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Getter
 public class Argument {
@@ -22,6 +27,19 @@ public class Argument {
     private final boolean displayAlone;
     private final Set<String> aliases;
 
+    /*
+     * Arguments and the commands they point to never change after startup, so everything rendered for a locale
+     * can be kept around. Usage is cached without the base so it can be shared between prefixes.
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<Locale, String> names = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE)
+    private final Map<Locale, String> descriptions = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE)
+    private final Map<Locale, String> arguments = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE)
+    private final Map<Locale, List<UsageLine>> usageLines = new ConcurrentHashMap<>();
+
     Argument(String id, ArgumentType type, boolean displayAlone, Set<Argument> subArgs, Set<String> aliases) {
         this.id = id;
         this.subArgs = Set.copyOf(subArgs);
@@ -31,6 +49,10 @@ public class Argument {
     }
 
     public String name(Locale locale) {
+        return names.computeIfAbsent(locale, this::renderName);
+    }
+
+    private String renderName(Locale locale) {
         if (type != ArgumentType.COMMAND) {
             return Language.i18n(locale, "arguments." + id.substring(id.lastIndexOf('.') + 1));
         }
@@ -57,6 +79,10 @@ public class Argument {
     }
 
     public String description(Locale locale) {
+        return descriptions.computeIfAbsent(locale, this::renderDescription);
+    }
+
+    private String renderDescription(Locale locale) {
         if (type != ArgumentType.COMMAND) {
             Argument parent = CascadeBot.INS.getArgumentManager().getParent(id);
             return parent != null ? parent.description(locale) : "";
@@ -97,23 +123,40 @@ public class Argument {
      */
     public String getUsageString(Locale locale, String base) {
         StringBuilder usageBuilder = new StringBuilder();
-        String field = this.getArgument(locale);
-
-        if (isDisplayAlone() || subArgs.size() == 0) {
-            usageBuilder.append("`").append(base).append(field).append("`");
-            if (!StringUtils.isBlank(description(locale))) {
-                usageBuilder.append(" - ").append(description(locale));
+        for (UsageLine line : getUsageLines(locale)) {
+            usageBuilder.append("`").append(base).append(line.usage).append("`");
+            if (line.description != null) {
+                usageBuilder.append(" - ").append(line.description);
             }
             usageBuilder.append('\n');
         }
+        return usageBuilder.toString();
+    }
+
+    private List<UsageLine> getUsageLines(Locale locale) {
+        return usageLines.computeIfAbsent(locale, key -> {
+            List<UsageLine> lines = new ArrayList<>();
+            addUsageLines(key, "", lines);
+            return List.copyOf(lines);
+        });
+    }
+
+    private void addUsageLines(Locale locale, String path, List<UsageLine> lines) {
+        String field = path + getArgument(locale);
+        if (isDisplayAlone() || subArgs.size() == 0) {
+            String description = description(locale);
+            lines.add(new UsageLine(field, StringUtils.isBlank(description) ? null : description));
+        }
         for (Argument subArg : subArgs) {
-            usageBuilder.append(subArg.getUsageString(locale, base + field + " "));
+            subArg.addUsageLines(locale, field + " ", lines);
         }
-
-        return usageBuilder.toString();
     }
 
     public String getArgument(Locale locale) {
+        return arguments.computeIfAbsent(locale, this::renderArgument);
+    }
+
+    private String renderArgument(Locale locale) {
         String argument = name(locale).isBlank() ? id.substring(id.lastIndexOf('.') + 1) : name(locale);
         if (aliases.size() > 0) {
             StringBuilder paramBuilder = new StringBuilder();
@@ -134,5 +177,17 @@ public class Argument {
         return argument;
     }
 
+    private static class UsageLine {
+
+        private final String usage;
+        private final String description;
+
+        private UsageLine(String usage, String description) {
+            this.usage = usage;
+            this.description = description;
+        }
+
+    }
+
     //TODO implement utils for checking arguments in the command. we have a class here why not use it.
 }
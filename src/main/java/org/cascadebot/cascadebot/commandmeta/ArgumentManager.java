@@ -12,6 +12,8 @@ import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.EnumUtils;
 import org.cascadebot.cascadebot.CascadeBot;
 import org.cascadebot.cascadebot.ShutdownHandler;
+import org.cascadebot.cascadebot.data.language.Language;
+import org.cascadebot.cascadebot.data.language.Locale;
 
 import java.util.HashSet;
 import java.util.Map;
@@ -45,6 +47,20 @@ public class ArgumentManager {
         }
     }
 
+    /**
+     * Renders the usage of every argument for every loaded language so the first usage or help
+     * message for a locale doesn't have to. This needs the commands to be loaded first.
+     */
+    public void cacheUsage() {
+        long start = System.currentTimeMillis();
+        for (Locale locale : Language.getLanguages().keySet()) {
+            for (Argument argument : arguments.values()) {
+                argument.getUsageString(locale, "");
+            }
+        }
+        CascadeBot.LOGGER.info("Cached usage for {} arguments in {}ms.", arguments.size(), System.currentTimeMillis() - start);
+    }
+
     /**
      * Gets the argument for a specific command. This argument contains all the arguments for the command.
      * If this method returns null, it means a command doesn't have any arguments or the arguments haven't
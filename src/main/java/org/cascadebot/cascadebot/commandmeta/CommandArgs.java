@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.commandmeta;
+
+import java.util.Arrays;
+
+/**
+ * The arguments for a command, tokenized once from the original message content.
+ * <p>
+ * Arguments are split on whitespace. An argument starting with {@code "} runs until the next {@code "} that is
+ * followed by whitespace or the end of the message, so {@code "hello world"} is a single argument. Inside quotes
+ * a backslash escapes the next character. A quote that is never closed is treated as a normal character.
+ * <p>
+ * Sub-command contexts use {@link #skip(int)} which shares the tokens with the parent rather than copying them.
+ */
+public final class CommandArgs {
+
+    // Most commands have only a few arguments
+    private static final int INITIAL_CAPACITY = 8;
+
+    private static final CommandArgs EMPTY = new CommandArgs("", new String[0], new int[0], new int[0], 0);
+
+    private final String content;
+    private final String[] values;
+    // The start (inclusive) and end (exclusive) of each token in the content, including any quotes
+    private final int[] starts;
+    private final int[] ends;
+    private final int offset;
+
+    private String[] array;
+
+    private CommandArgs(String content, String[] values, int[] starts, int[] ends, int offset) {
+        this.content = content;
+        this.values = values;
+        this.starts = starts;
+        this.ends = ends;
+        this.offset = offset;
+    }
+
+    /**
+     * Tokenizes some content.
+     *
+     * @param content The content to tokenize.
+     * @param start   The index to start from, to skip a prefix.
+     * @return The tokens from the content.
+     */
+    public static CommandArgs parse(String content, int start) {
+        int count = 0;
+        String[] values = new String[INITIAL_CAPACITY];
+        int[] starts = new int[INITIAL_CAPACITY];
+        int[] ends = new int[INITIAL_CAPACITY];
+        StringBuilder token = new StringBuilder();
+
+        int length = content.length();
+        int i = start;
+        while (i < length) {
+            if (Character.isWhitespace(content.charAt(i))) {
+                i++;
+                continue;
+            }
+            int tokenStart = i;
+            int end = content.charAt(i) == '"' ? readQuoted(content, i, token) : -1;
+            if (end == -1) {
+                token.setLength(0);
+                while (i < length && !Character.isWhitespace(content.charAt(i))) {
+                    token.append(content.charAt(i++));
+                }
+                end = i;
+            }
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            values[count] = token.toString();
+            starts[count] = tokenStart;
+            ends[count] = end;
+            count++;
+            i = end;
+        }
+
+        return new CommandArgs(content, Arrays.copyOf(values, count), Arrays.copyOf(starts, count), Arrays.copyOf(ends, count), 0);
+    }
+
+    // Returns the index after the closing quote, or -1 if this isn't a closed quoted argument
+    private static int readQuoted(String content, int quote, StringBuilder token) {
+        token.setLength(0);
+        int length = content.length();
+        for (int i = quote + 1; i < length; i++) {
+            char c = content.charAt(i);
+            if (c == '\\' && i + 1 < length) {
+                token.append(content.charAt(++i));
+            } else if (c == '"' && (i + 1 == length || Character.isWhitespace(content.charAt(i + 1)))) {
+                return i + 1;
+            } else {
+                token.append(c);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Creates arguments from already split values, for when a command is run without a message to parse.
+     *
+     * @param args The arguments.
+     * @return The arguments, with the content being the arguments joined with spaces.
+     */
+    public static CommandArgs of(String... args) {
+        if (args.length == 0) return EMPTY;
+        int[] starts = new int[args.length];
+        int[] ends = new int[args.length];
+        int position = 0;
+        for (int i = 0; i < args.length; i++) {
+            starts[i] = position;
+            position += args[i].length();
+            ends[i] = position;
+            position++;
+        }
+        return new CommandArgs(String.join(" ", args), args.clone(), starts, ends, 0);
+    }
+
+    /**
+     * Gets a view of these arguments without the first few. This doesn't copy anything.
+     *
+     * @param count The number of arguments to skip.
+     * @return The remaining arguments.
+     */
+    public CommandArgs skip(int count) {
+        if (count < 0 || count > size()) throw new IndexOutOfBoundsException("Cannot skip " + count + " of " + size() + " arguments");
+        return new CommandArgs(content, values, starts, ends, offset + count);
+    }
+
+    public int size() {
+        return values.length - offset;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public String get(int index) {
+        if (index < 0 || index >= size()) throw new ArrayIndexOutOfBoundsException(index);
+        return values[offset + index];
+    }
+
+    /**
+     * Gets the original content covered by a range of arguments, including the whitespace and quotes between them.
+     *
+     * @param start The first argument to include.
+     * @param end   The argument to stop before.
+     * @return The content for the arguments, or an empty string if the range is empty.
+     */
+    public String getContent(int start, int end) {
+        start = Math.max(start, 0);
+        end = Math.min(end, size());
+        if (start >= end) return "";
+        return content.substring(starts[offset + start], ends[offset + end - 1]);
+    }
+
+    /**
+     * Gets the arguments as an array. The array is only created the first time this is called.
+     *
+     * @return The arguments, this must not be modified.
+     */
+    public String[] toArray() {
+        if (array == null) {
+            array = offset == 0 ? values : Arrays.copyOfRange(values, offset, values.length);
+        }
+        return array;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+}
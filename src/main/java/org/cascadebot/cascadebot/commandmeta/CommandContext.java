@@ -19,7 +19,6 @@ import net.dv8tion.jda.api.entities.SelfUser;
 import net.dv8tion.jda.api.entities.TextChannel;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.internal.utils.Checks;
-import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.cascadebot.cascadebot.CascadeBot;
 import org.cascadebot.cascadebot.data.Config;
@@ -31,6 +30,7 @@ import org.cascadebot.cascadebot.messaging.MessagingDirectMessage;
 import org.cascadebot.cascadebot.messaging.MessagingTimed;
 import org.cascadebot.cascadebot.messaging.MessagingTyped;
 import org.cascadebot.cascadebot.messaging.MessagingUI;
+import org.cascadebot.cascadebot.metrics.CommandTrace;
 import org.cascadebot.cascadebot.music.CascadePlayer;
 import org.cascadebot.cascadebot.permissions.CascadePermission;
 import org.cascadebot.shared.Regex;
@@ -47,7 +47,8 @@ public class CommandContext {
     private final Guild guild;
     private final Member member;
 
-    private final String[] args;
+    @Getter(AccessLevel.NONE)
+    private final CommandArgs args;
     private final String trigger;
     private final boolean isMention;
 
@@ -65,6 +66,11 @@ public class CommandContext {
 
     public CommandContext(ICommandExecutable command, JDA jda, TextChannel channel, Message message, Guild guild, GuildData data, String[] args, Member invoker,
                           String trigger, boolean isMention) {
+        this(command, jda, channel, message, guild, data, CommandArgs.of(args), invoker, trigger, isMention);
+    }
+
+    public CommandContext(ICommandExecutable command, JDA jda, TextChannel channel, Message message, Guild guild, GuildData data, CommandArgs args, Member invoker,
+                          String trigger, boolean isMention) {
         this.command = command;
         this.jda = jda;
         this.channel = channel;
@@ -120,17 +126,25 @@ public class CommandContext {
 
     //region Helper methods for arguments
 
+    public String[] getArgs() {
+        return args.toArray();
+    }
+
+    public CommandArgs getArguments() {
+        return args;
+    }
+
     public String getMessage(int start) {
-        return getMessage(start, args.length);
+        return getMessage(start, args.size());
     }
 
     public String getMessage(int start, int end) {
-        return String.join(" ", ArrayUtils.subarray(args, start, end));
+        return args.getContent(start, end);
     }
 
     public boolean isArgInteger(int index) {
         try {
-            Integer.parseInt(args[index]);
+            Integer.parseInt(args.get(index));
             return true;
         } catch (NumberFormatException e) {
             return false;
@@ -139,7 +153,7 @@ public class CommandContext {
 
     public boolean isArgLong(int index) {
         try {
-            Long.parseLong(args[index]);
+            Long.parseLong(args.get(index));
             return true;
         } catch (NumberFormatException e) {
             return false;
@@ -149,7 +163,7 @@ public class CommandContext {
     public boolean isArgFloat(int index) {
         try {
             // The replacement of the comma is to support languages which use a comma for the decimal point
-            Float.parseFloat(args[index].replaceAll(",", "."));
+            Float.parseFloat(args.get(index).replaceAll(",", "."));
             return true;
         } catch (NumberFormatException e) {
             return false;
@@ -159,7 +173,7 @@ public class CommandContext {
     public boolean isArgDouble(int index) {
         try {
             // The replacement of the comma is to support languages which use a comma for the decimal point
-            Float.parseFloat(args[index].replaceAll(",", "."));
+            Float.parseFloat(args.get(index).replaceAll(",", "."));
             return true;
         } catch (NumberFormatException e) {
             return false;
@@ -167,25 +181,25 @@ public class CommandContext {
     }
 
     public String getArg(int index) {
-        return this.args[index];
+        return this.args.get(index);
     }
 
     public int getArgAsInteger(int index) {
-        return Integer.parseInt(this.args[index]);
+        return Integer.parseInt(this.args.get(index));
     }
 
     public long getArgAsLong(int index) {
-        return Long.parseLong(this.args[index]);
+        return Long.parseLong(this.args.get(index));
     }
 
     public float getArgAsFloat(int index) {
         // The replacement of the comma is to support languages which use a comma for the decimal point
-        return Float.parseFloat(this.args[index].replaceAll(",", "."));
+        return Float.parseFloat(this.args.get(index).replaceAll(",", "."));
     }
 
     public double getArgAsDouble(int index) {
         // The replacement of the comma is to support languages which use a comma for the decimal point
-        return Double.parseDouble(this.args[index].replaceAll(",", "."));
+        return Double.parseDouble(this.args.get(index).replaceAll(",", "."));
     }
 
     /**
@@ -201,7 +215,7 @@ public class CommandContext {
             Tests to make sure that we're not trying to get an argument out of range
 
             For command of ;test <user> command
-            If id given is user.command and args.length is 1 or 0, then the number of separators + 1
+            If id given is user.command and args.size() is 1 or 0, then the number of separators + 1
             (1 in this case) will be greater than to the number of args so we return false since
             there could not physically be an arg at that position.
 
@@ -209,7 +223,7 @@ public class CommandContext {
             It's a lazy check because it doesn't check arguments after, that is the role of the command
             to check the arg length explicitly.
          */
-        if (args.length < requiredArgsCount) return false;
+        if (args.size() < requiredArgsCount) return false;
 
         String argId = command.getAbsoluteCommand() + "." + id;
         Argument argument = CascadeBot.INS.getArgumentManager().getArgument(argId);
@@ -221,7 +235,7 @@ public class CommandContext {
             return true;
         }
 
-        return args[requiredArgsCount - 1].equalsIgnoreCase(argument.name(getLocale()));
+        return args.get(requiredArgsCount - 1).equalsIgnoreCase(argument.name(getLocale()));
     }
 
     //endregion
@@ -236,17 +250,17 @@ public class CommandContext {
      */
     public void reply(String message) {
         Checks.notBlank(message, "message");
-        channel.sendMessage(message).queue();
+        CommandTrace.queueReply(channel.sendMessage(message));
     }
 
     public void reply(MessageEmbed embed) {
         Checks.notNull(embed, "embed");
-        channel.sendMessage(embed).queue();
+        CommandTrace.queueReply(channel.sendMessage(embed));
     }
 
     public void reply(Message message) {
         Checks.notNull(message, "message");
-        channel.sendMessage(message).queue();
+        CommandTrace.queueReply(channel.sendMessage(message));
     }
 
     public String i18n(String path, Object... args) {
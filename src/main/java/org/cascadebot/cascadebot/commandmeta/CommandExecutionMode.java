@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.commandmeta;
+
+import org.cascadebot.cascadebot.data.Config;
+
+public enum CommandExecutionMode {
+
+    /**
+     * Commands are run on a fixed number of worker threads with a queue per guild.
+     * See {@link CommandScheduler}.
+     */
+    SCHEDULER,
+    /**
+     * Every command gets its own platform thread.
+     */
+    THREAD_PER_COMMAND,
+    /**
+     * Every command gets its own virtual thread. This needs Java 21 or newer and falls back to
+     * {@link #THREAD_PER_COMMAND} on older runtimes.
+     */
+    VIRTUAL_THREAD;
+
+    public CommandExecutor createExecutor(Config config) {
+        switch (this) {
+            case THREAD_PER_COMMAND:
+                return ThreadPerCommandExecutor.platformThreads(config.getCommandMaxInFlightPerGuild() + config.getCommandMaxQueuedPerGuild());
+            case VIRTUAL_THREAD:
+                return ThreadPerCommandExecutor.virtualThreads(config.getCommandMaxInFlightPerGuild() + config.getCommandMaxQueuedPerGuild());
+            default:
+                return new CommandScheduler(config.getCommandWorkers(), config.getCommandMaxInFlightPerGuild(), config.getCommandMaxQueuedPerGuild());
+        }
+    }
+
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.commandmeta;
+
+/**
+ * Runs commands once they have been parsed and authorised by the command listener.
+ */
+public interface CommandExecutor {
+
+    /**
+     * Submits a command to be run for a guild.
+     *
+     * @param guildId The ID of the guild the command was run in.
+     * @param command The command to run.
+     * @return {@code true} if the command was accepted or {@code false} if it was rejected and will not run.
+     */
+    boolean submit(long guildId, Runnable command);
+
+    /**
+     * Stops accepting new commands. Commands that have already been accepted will still be run.
+     */
+    void shutdown();
+
+}
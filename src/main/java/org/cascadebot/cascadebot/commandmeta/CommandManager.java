@@ -8,14 +8,22 @@ package org.cascadebot.cascadebot.commandmeta;
 import lombok.Getter;
 import org.apache.commons.lang3.reflect.ConstructorUtils;
 import org.cascadebot.cascadebot.ShutdownHandler;
+import org.cascadebot.cascadebot.commandmeta.processor.CommandIndexProcessor;
 import org.cascadebot.cascadebot.data.language.Locale;
 import org.cascadebot.cascadebot.data.objects.GuildData;
 import org.cascadebot.cascadebot.utils.ReflectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class CommandManager {
@@ -28,17 +36,29 @@ public class CommandManager {
     public CommandManager() {
         long start = System.currentTimeMillis();
         try {
+            List<Class<?>> commandClasses = readCommandIndex();
+            String source = "command index";
+            if (commandClasses == null) {
+                commandClasses = ReflectionUtils.getClasses("org.cascadebot.cascadebot.commands");
+                source = "classpath";
+            }
+
             List<ICommandMain> commands = new ArrayList<>();
-            for (Class<?> c : ReflectionUtils.getClasses("org.cascadebot.cascadebot.commands")) {
+            Map<String, ICommandMain> triggers = new HashMap<>();
+            for (Class<?> c : commandClasses) {
                 if (ICommandMain.class.isAssignableFrom(c)) {
                     ICommandMain command = (ICommandMain) ConstructorUtils.invokeConstructor(c);
                     if (command.getModule() == null) {
                         throw new IllegalStateException(String.format("Command %s could not be loaded as its module was null!", command.getClass().getSimpleName()));
                     }
+                    ICommandMain existing = triggers.putIfAbsent(command.command(), command);
+                    if (existing != null) {
+                        throw new IllegalStateException(String.format("Command %s could not be loaded as its trigger is already used by %s!", command.getClass().getSimpleName(), existing.getClass().getSimpleName()));
+                    }
                     commands.add(command);
                 }
             }
-            LOGGER.info("Loaded {} commands in {}ms.", commands.size(), (System.currentTimeMillis() - start));
+            LOGGER.info("Loaded {} commands from the {} in {}ms.", commands.size(), source, (System.currentTimeMillis() - start));
             this.commands = List.copyOf(commands);
         } catch (Exception e) {
             LOGGER.error("Could not load commands!", e);
@@ -46,6 +66,31 @@ public class CommandManager {
         }
     }
 
+    /**
+     * Reads the list of commands generated by {@link CommandIndexProcessor} at compile time.
+     *
+     * @return The command classes, or null if the index is missing or out of date and the classpath needs scanning instead.
+     */
+    private List<Class<?>> readCommandIndex() {
+        InputStream stream = CommandManager.class.getClassLoader().getResourceAsStream(CommandIndexProcessor.INDEX_PATH);
+        if (stream == null) {
+            LOGGER.warn("Could not find the command index, falling back to scanning the classpath for commands.");
+            return null;
+        }
+        List<Class<?>> classes = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                classes.add(Class.forName(line.trim(), true, CommandManager.class.getClassLoader()));
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            LOGGER.warn("Could not read the command index, falling back to scanning the classpath for commands.", e);
+            return null;
+        }
+        return classes;
+    }
+
     public ICommandMain getCommand(String command) {
         for (ICommandMain cmd : commands) {
             if (cmd.command().equals(command)) return cmd;
@@ -66,15 +111,32 @@ public class CommandManager {
     }
 
     public ICommandMain getCommand(String command, GuildData data) {
+        return data.getTriggerIndex().getCommand(command);
+    }
+
+    /**
+     * Builds the trigger lookup for a guild. The resolution order matches a linear scan of the commands:
+     * the first command whose name or alias matches wins and the default command names are only used
+     * as a fallback if nothing else matched.
+     *
+     * @param data    The guild data to build the index from.
+     * @param version The command info version of the guild data this index is being built from.
+     * @return The immutable trigger index for the guild.
+     */
+    public CommandTriggerIndex buildTriggerIndex(GuildData data, int version) {
+        Locale locale = data.getLocale();
+        Map<String, ICommandMain> triggers = new HashMap<>();
         for (ICommandMain cmd : commands) {
-            if (data.getCommandName(cmd).equals(command)) {
-                return cmd;
-            } else if (data.getCommandAliases(cmd).contains(command)) {
-                return cmd;
+            triggers.putIfAbsent(data.getCommandName(cmd), cmd);
+            for (String alias : data.getCommandAliases(cmd)) {
+                triggers.putIfAbsent(alias, cmd);
             }
         }
         // Fallback to default if cannot find command
-        return getCommand(command);
+        for (ICommandMain cmd : commands) {
+            triggers.putIfAbsent(cmd.command(), cmd);
+        }
+        return new CommandTriggerIndex(locale, version, triggers);
     }
 
     public List<ICommandMain> getCommandsByModule(Module type) {
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.commandmeta;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.EqualsAndHashCode;
+import org.cascadebot.cascadebot.data.Config;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throttles commands using token buckets for each user, channel and guild.
+ * <p>
+ * Every command is checked against the default limits from the config, which are shared between all commands.
+ * Commands can add stricter limits of their own with {@link ICommandExecutable#getRateLimits()}, which are
+ * tracked separately for each command.
+ */
+public class CommandRateLimiter {
+
+    private static final long MAX_BUCKETS = 100_000;
+    private static final long BUCKET_EXPIRY_MINUTES = 10;
+
+    private final Map<RateLimitScope, RateLimit> defaultLimits;
+    private final Map<RateLimitScope, Cache<Long, TokenBucket>> defaultBuckets = new EnumMap<>(RateLimitScope.class);
+    private final Cache<CommandBucketKey, TokenBucket> commandBuckets = newBucketCache();
+
+    public CommandRateLimiter(Map<RateLimitScope, RateLimit> defaultLimits) {
+        this.defaultLimits = Map.copyOf(defaultLimits);
+        for (RateLimitScope scope : this.defaultLimits.keySet()) {
+            defaultBuckets.put(scope, newBucketCache());
+        }
+    }
+
+    /**
+     * Attempts to take a token from every bucket the command is subject to.
+     * <p>
+     * Buckets are checked user first, then channel, then guild and checking stops at the first empty bucket.
+     * Tokens taken from earlier buckets are not given back, so a user who is throttled at the channel or guild
+     * level still uses up their own allowance.
+     *
+     * @param command The command being run.
+     * @param context The context the command is being run in.
+     * @return The scope of the first limit which throttled the command or {@code null} if the command can run.
+     */
+    public RateLimitScope tryAcquire(ICommandExecutable command, CommandContext context) {
+        long now = System.nanoTime();
+        for (RateLimitScope scope : RateLimitScope.values()) {
+            RateLimit limit = defaultLimits.get(scope);
+            if (limit == null) continue;
+            TokenBucket bucket = defaultBuckets.get(scope).get(getId(scope, context), id -> new TokenBucket(now));
+            if (!bucket.tryConsume(limit, now)) return scope;
+        }
+        for (RateLimit limit : command.getRateLimits()) {
+            CommandBucketKey key = new CommandBucketKey(command.getClass(), limit, getId(limit.getScope(), context));
+            TokenBucket bucket = commandBuckets.get(key, k -> new TokenBucket(now));
+            if (!bucket.tryConsume(limit, now)) return limit.getScope();
+        }
+        return null;
+    }
+
+    private long getId(RateLimitScope scope, CommandContext context) {
+        switch (scope) {
+            case USER:
+                return context.getUser().getIdLong();
+            case CHANNEL:
+                return context.getChannel().getIdLong();
+            default:
+                return context.getGuild().getIdLong();
+        }
+    }
+
+    private static <K> Cache<K, TokenBucket> newBucketCache() {
+        // A bucket that hasn't been touched for a while has refilled, so it's the same as a new one and can be dropped
+        return Caffeine.newBuilder()
+                .maximumSize(MAX_BUCKETS)
+                .expireAfterAccess(BUCKET_EXPIRY_MINUTES, TimeUnit.MINUTES)
+                .build();
+    }
+
+    public static CommandRateLimiter fromConfig(Config config) {
+        return new CommandRateLimiter(config.getDefaultRateLimits());
+    }
+
+    /**
+     * A lock-free token bucket using the generic cell rate algorithm. Rather than storing a token count,
+     * this stores the time at which the bucket would be full again if nothing else was taken from it.
+     */
+    private static class TokenBucket {
+
+        private final AtomicLong theoreticalArrivalTime;
+
+        private TokenBucket(long now) {
+            this.theoreticalArrivalTime = new AtomicLong(now);
+        }
+
+        private boolean tryConsume(RateLimit limit, long now) {
+            long interval = limit.getRefillIntervalNanos();
+            long tolerance = interval * limit.getCapacity();
+            while (true) {
+                long current = theoreticalArrivalTime.get();
+                long next = Math.max(current, now) + interval;
+                if (next - now > tolerance) return false;
+                if (theoreticalArrivalTime.compareAndSet(current, next)) return true;
+            }
+        }
+
+    }
+
+    @EqualsAndHashCode
+    private static class CommandBucketKey {
+
+        private final Class<?> command;
+        private final RateLimit limit;
+        private final long id;
+
+        private CommandBucketKey(Class<?> command, RateLimit limit, long id) {
+            this.command = command;
+            this.limit = limit;
+            this.id = id;
+        }
+
+    }
+
+}
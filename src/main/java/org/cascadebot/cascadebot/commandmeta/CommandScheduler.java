@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.commandmeta;
+
+import org.cascadebot.cascadebot.MDCException;
+import org.cascadebot.cascadebot.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded command executor which keeps a queue of commands per guild and serves the guilds round-robin.
+ * <p>
+ * Each guild can only have a limited number of commands running at once and a limited number of commands
+ * waiting to run, so a single guild spamming slow commands can't take every worker away from other guilds.
+ */
+public class CommandScheduler implements CommandExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CommandScheduler.class);
+
+    static final ThreadGroup COMMAND_THREADS = new ThreadGroup("Command Threads");
+
+    private final int maxInFlightPerGuild;
+    private final int maxQueuedPerGuild;
+
+    private final Map<Long, GuildQueue> guildQueues = new ConcurrentHashMap<>();
+    // Guilds that have commands waiting and are below their in-flight limit, in the order they should be served
+    private final BlockingQueue<GuildQueue> readyGuilds = new LinkedBlockingQueue<>();
+    private final List<Thread> workers = new ArrayList<>();
+
+    private volatile boolean shutdown = false;
+
+    public CommandScheduler(int workerCount, int maxInFlightPerGuild, int maxQueuedPerGuild) {
+        if (workerCount < 1 || maxInFlightPerGuild < 1 || maxQueuedPerGuild < 1) {
+            throw new IllegalArgumentException("The command scheduler limits must all be at least 1!");
+        }
+        this.maxInFlightPerGuild = maxInFlightPerGuild;
+        this.maxQueuedPerGuild = maxQueuedPerGuild;
+        for (int i = 1; i <= workerCount; i++) {
+            Thread worker = new Thread(COMMAND_THREADS, this::runWorker, "Command Pool-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Queues a command to be run for a guild.
+     *
+     * @param guildId The ID of the guild the command was run in.
+     * @param command The command to run.
+     * @return {@code true} if the command was queued or {@code false} if the guild's queue is full or the scheduler is shut down.
+     */
+    @Override
+    public boolean submit(long guildId, Runnable command) {
+        while (!shutdown) {
+            GuildQueue queue = guildQueues.computeIfAbsent(guildId, GuildQueue::new);
+            synchronized (queue) {
+                // The queue was removed from the map after we got it, so try again with a fresh one
+                if (queue.retired) continue;
+                if (queue.pending.size() >= maxQueuedPerGuild) return false;
+                queue.pending.add(new QueuedCommand(command));
+                Metrics.INS.commandQueueDepth.inc();
+                scheduleIfReady(queue);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stops accepting new commands. Commands that have already been queued will still be run before the workers exit.
+     */
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    public int getQueuedCommands(long guildId) {
+        GuildQueue queue = guildQueues.get(guildId);
+        if (queue == null) return 0;
+        synchronized (queue) {
+            return queue.pending.size();
+        }
+    }
+
+    // This must be called while holding the lock for the queue
+    private void scheduleIfReady(GuildQueue queue) {
+        if (!queue.scheduled && !queue.pending.isEmpty() && queue.inFlight < maxInFlightPerGuild) {
+            queue.scheduled = true;
+            readyGuilds.add(queue);
+        }
+    }
+
+    private void runWorker() {
+        while (true) {
+            GuildQueue queue;
+            try {
+                queue = readyGuilds.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (queue == null) {
+                if (shutdown) return;
+                continue;
+            }
+
+            QueuedCommand command;
+            synchronized (queue) {
+                queue.scheduled = false;
+                command = queue.pending.poll();
+                if (command == null) continue;
+                queue.inFlight++;
+                Metrics.INS.commandQueueDepth.dec();
+                // Put the guild back at the end of the line if it still has work, this is what gives us round-robin
+                scheduleIfReady(queue);
+            }
+
+            Metrics.INS.commandQueueWaitTime.observe((System.nanoTime() - command.queuedAt) / 1e9);
+            Metrics.INS.commandWorkersActive.inc();
+            try {
+                command.command.run();
+            } catch (Throwable e) {
+                LOGGER.error("Uncaught exception while running a command!", MDCException.from(e));
+            } finally {
+                Metrics.INS.commandWorkersActive.dec();
+                synchronized (queue) {
+                    queue.inFlight--;
+                    if (queue.pending.isEmpty() && queue.inFlight == 0) {
+                        queue.retired = true;
+                        guildQueues.remove(queue.guildId, queue);
+                    } else {
+                        scheduleIfReady(queue);
+                    }
+                }
+            }
+        }
+    }
+
+    private static class GuildQueue {
+
+        private final long guildId;
+        private final Queue<QueuedCommand> pending = new ArrayDeque<>();
+        private int inFlight = 0;
+        private boolean scheduled = false;
+        private boolean retired = false;
+
+        private GuildQueue(long guildId) {
+            this.guildId = guildId;
+        }
+
+    }
+
+    private static class QueuedCommand {
+
+        private final Runnable command;
+        private final long queuedAt = System.nanoTime();
+
+        private QueuedCommand(Runnable command) {
+            this.command = command;
+        }
+
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.commandmeta;
+
+import lombok.Getter;
+import org.cascadebot.cascadebot.data.language.Locale;
+
+import java.util.Map;
+
+/**
+ * An immutable trigger to command lookup for a single guild. This is built from the guild's command info
+ * and locale so the command listener doesn't have to scan every command for every message.
+ * <p>
+ * The index is tagged with the locale and command info version it was built from so a guild can tell
+ * when it has gone stale and needs rebuilding.
+ */
+@Getter
+public final class CommandTriggerIndex {
+
+    private final Locale locale;
+    private final int version;
+    private final Map<String, ICommandMain> triggers;
+
+    CommandTriggerIndex(Locale locale, int version, Map<String, ICommandMain> triggers) {
+        this.locale = locale;
+        this.version = version;
+        this.triggers = Map.copyOf(triggers);
+    }
+
+    public ICommandMain getCommand(String trigger) {
+        return triggers.get(trigger);
+    }
+
+    public boolean isValidFor(Locale locale, int version) {
+        return this.locale == locale && this.version == version;
+    }
+
+}
@@ -66,4 +66,14 @@ public interface ICommandExecutable {
         return Set.of();
     }
 
+    /**
+     * Rate limits specific to this command. These are checked on top of the default limits from the config,
+     * so they should only be used to make a command stricter, for example when it calls an external API.
+     *
+     * @return The rate limits for this command.
+     */
+    default Set<RateLimit> getRateLimits() {
+        return Set.of();
+    }
+
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.commandmeta;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket limit for running commands. A bucket holds up to {@code capacity} commands and refills
+ * completely over the given period, so short bursts are allowed but the long term rate is capped.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public final class RateLimit {
+
+    private final RateLimitScope scope;
+    private final int capacity;
+    private final long periodNanos;
+
+    private RateLimit(RateLimitScope scope, int capacity, long periodNanos) {
+        if (capacity < 1 || periodNanos < 1) {
+            throw new IllegalArgumentException("A rate limit must have a positive capacity and period!");
+        }
+        this.scope = scope;
+        this.capacity = capacity;
+        this.periodNanos = periodNanos;
+    }
+
+    /**
+     * Creates a rate limit which allows {@code capacity} commands per {@code period}.
+     *
+     * @param scope    What the limit is tracked against.
+     * @param capacity The number of commands that can be run in a burst.
+     * @param period   The time it takes for an empty bucket to refill completely.
+     * @param unit     The unit of the period.
+     * @return The rate limit.
+     */
+    public static RateLimit of(RateLimitScope scope, int capacity, long period, TimeUnit unit) {
+        return new RateLimit(scope, capacity, unit.toNanos(period));
+    }
+
+    /**
+     * @return The time it takes for one token to be added back to the bucket.
+     */
+    public long getRefillIntervalNanos() {
+        return Math.max(1, periodNanos / capacity);
+    }
+
+}
@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.commandmeta;
+
+public enum RateLimitScope {
+
+    /**
+     * The limit applies to each user separately, across every channel and guild.
+     */
+    USER,
+    /**
+     * The limit applies to each text channel, shared between everyone using it.
+     */
+    CHANNEL,
+    /**
+     * The limit applies to each guild, shared between everyone in it.
+     */
+    GUILD
+
+}
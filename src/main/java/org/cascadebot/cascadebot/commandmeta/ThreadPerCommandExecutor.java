@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.commandmeta;
+
+import org.cascadebot.cascadebot.CascadeBot;
+import org.cascadebot.cascadebot.MDCException;
+import org.cascadebot.cascadebot.metrics.Metrics;
+import org.cascadebot.shared.utils.ThreadPoolExecutorLogged;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs every command on its own thread. There is no global limit on the number of commands running at once,
+ * only a limit on the number of commands a single guild can have outstanding.
+ */
+public class ThreadPerCommandExecutor implements CommandExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThreadPerCommandExecutor.class);
+
+    private final ExecutorService executor;
+    private final int maxOutstandingPerGuild;
+
+    // <Guild ID, Number of commands queued or running>
+    private final Map<Long, Integer> outstanding = new ConcurrentHashMap<>();
+
+    private ThreadPerCommandExecutor(ExecutorService executor, int maxOutstandingPerGuild) {
+        this.executor = executor;
+        this.maxOutstandingPerGuild = maxOutstandingPerGuild;
+    }
+
+    public static ThreadPerCommandExecutor platformThreads(int maxOutstandingPerGuild) {
+        AtomicInteger threadCounter = new AtomicInteger(0);
+        return new ThreadPerCommandExecutor(ThreadPoolExecutorLogged.newCachedThreadPool(
+                r -> new Thread(CommandScheduler.COMMAND_THREADS, r, "Command Pool-" + threadCounter.incrementAndGet()),
+                CascadeBot.LOGGER
+        ), maxOutstandingPerGuild);
+    }
+
+    public static ThreadPerCommandExecutor virtualThreads(int maxOutstandingPerGuild) {
+        try {
+            // This is looked up reflectively as we still compile against Java 11
+            ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            LOGGER.info("Running commands on virtual threads!");
+            return new ThreadPerCommandExecutor(executor, maxOutstandingPerGuild);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            LOGGER.warn("Virtual threads are not available on Java {}, falling back to a platform thread per command!", Runtime.version());
+            return platformThreads(maxOutstandingPerGuild);
+        }
+    }
+
+    @Override
+    public boolean submit(long guildId, Runnable command) {
+        boolean[] accepted = {false};
+        outstanding.compute(guildId, (id, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= maxOutstandingPerGuild) return count;
+            accepted[0] = true;
+            return current + 1;
+        });
+        if (!accepted[0]) return false;
+
+        long queuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                Metrics.INS.commandQueueWaitTime.observe((System.nanoTime() - queuedAt) / 1e9);
+                Metrics.INS.commandWorkersActive.inc();
+                try {
+                    command.run();
+                } catch (Throwable e) {
+                    LOGGER.error("Uncaught exception while running a command!", MDCException.from(e));
+                } finally {
+                    Metrics.INS.commandWorkersActive.dec();
+                    release(guildId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            release(guildId);
+            return false;
+        }
+        return true;
+    }
+
+    private void release(long guildId) {
+        outstanding.computeIfPresent(guildId, (id, count) -> count <= 1 ? null : count - 1);
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.commandmeta.processor;
+
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.LiteralTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.ParenthesizedTree;
+import com.sun.source.tree.ReturnTree;
+import com.sun.source.tree.StatementTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.Trees;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Writes the list of commands to {@value #INDEX_PATH} at compile time so the command manager doesn't
+ * have to scan the classpath for them on startup.
+ * <p>
+ * While doing this it fails the build if a command returns {@code null} from {@code getModule()} or if two
+ * commands use the same default trigger. Only methods that directly return a literal can be checked here,
+ * anything more complicated is still checked when the commands are loaded.
+ * <p>
+ * Incremental compiles only see the classes that changed, so the index from the last compile is merged in. Its
+ * entries are kept as long as they are still commands. The source of those commands isn't available, so their
+ * triggers are saved next to the index in {@value #TRIGGERS_PATH} and checked against the ones compiled this time.
+ * <p>
+ * This can't reference any of the bot's classes as it is compiled before them.
+ */
+@SupportedAnnotationTypes("*")
+public class CommandIndexProcessor extends AbstractProcessor {
+
+    public static final String INDEX_PATH = "META-INF/cascadebot/commands.idx";
+    // <Command binary name>\t<Default trigger>, for the commands whose trigger could be read
+    private static final String TRIGGERS_PATH = "META-INF/cascadebot/command-triggers.idx";
+
+    private static final String COMMANDS_PACKAGE = "org.cascadebot.cascadebot.commands";
+    private static final String COMMAND_MAIN = "org.cascadebot.cascadebot.commandmeta.ICommandMain";
+
+    private Trees trees;
+    private TypeMirror commandType;
+    private final TreeSet<String> commands = new TreeSet<>();
+    // <Trigger, Command qualified name>
+    private final Map<String, String> triggers = new HashMap<>();
+    // <Command binary name, Trigger>
+    private final Map<String, String> commandTriggers = new HashMap<>();
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        trees = Trees.instance(processingEnv);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement commandMain = processingEnv.getElementUtils().getTypeElement(COMMAND_MAIN);
+        if (commandMain == null) return false;
+        commandType = processingEnv.getTypeUtils().erasure(commandMain.asType());
+
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+            if (!isCommand(type)) continue;
+            String name = processingEnv.getElementUtils().getBinaryName(type).toString();
+            commands.add(name);
+            validate(type, name);
+        }
+
+        if (roundEnv.processingOver() && !roundEnv.errorRaised()) {
+            writeIndex();
+        }
+        // Never claim anything so lombok still gets to see every class
+        return false;
+    }
+
+    private boolean isCommand(TypeElement type) {
+        return type.getKind() == ElementKind.CLASS
+                && !type.getModifiers().contains(Modifier.ABSTRACT)
+                && processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString().startsWith(COMMANDS_PACKAGE)
+                && processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(type.asType()), commandType);
+    }
+
+    private void validate(TypeElement type, String name) {
+        ExecutableElement getModule = findMethod(type, "getModule");
+        if (getModule != null && isNullLiteral(getReturnedLiteral(getModule))) {
+            error(getModule, "Command %s returns a null module!", type.getSimpleName());
+        }
+
+        ExecutableElement command = findMethod(type, "command");
+        LiteralTree trigger = getReturnedLiteral(command);
+        if (trigger != null && trigger.getKind() == Tree.Kind.STRING_LITERAL) {
+            addTrigger(type, name, (String) trigger.getValue(), command);
+        }
+    }
+
+    private boolean addTrigger(TypeElement type, String name, String trigger, Element location) {
+        String existing = triggers.putIfAbsent(trigger, type.getQualifiedName().toString());
+        if (existing != null) {
+            error(location, "Command %s uses the trigger \"%s\" which is already used by %s!", type.getSimpleName(), trigger, existing);
+            return false;
+        }
+        commandTriggers.put(name, trigger);
+        return true;
+    }
+
+    private ExecutableElement findMethod(TypeElement type, String name) {
+        TypeElement current = type;
+        while (current != null) {
+            for (ExecutableElement method : ElementFilter.methodsIn(current.getEnclosedElements())) {
+                if (method.getSimpleName().contentEquals(name) && method.getParameters().isEmpty()) {
+                    return method;
+                }
+            }
+            TypeMirror superclass = current.getSuperclass();
+            current = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+        }
+        return null;
+    }
+
+    // Returns the literal if the method body is just "return <literal>;", otherwise null
+    private LiteralTree getReturnedLiteral(ExecutableElement method) {
+        if (method == null) return null;
+        MethodTree tree = trees.getTree(method);
+        if (tree == null || tree.getBody() == null) return null;
+        List<? extends StatementTree> statements = tree.getBody().getStatements();
+        if (statements.size() != 1 || statements.get(0).getKind() != Tree.Kind.RETURN) return null;
+        ExpressionTree expression = ((ReturnTree) statements.get(0)).getExpression();
+        while (expression != null && expression.getKind() == Tree.Kind.PARENTHESIZED) {
+            expression = ((ParenthesizedTree) expression).getExpression();
+        }
+        return expression instanceof LiteralTree ? (LiteralTree) expression : null;
+    }
+
+    private boolean isNullLiteral(LiteralTree literal) {
+        return literal != null && literal.getKind() == Tree.Kind.NULL_LITERAL;
+    }
+
+    // Adds the commands from the last compile's index that weren't compiled this time, returning false if any of
+    // their triggers are now used by another command
+    private boolean mergeExistingIndex() {
+        List<String> existing = readResource(INDEX_PATH);
+        if (existing == null) {
+            // There's no index from an earlier compile, so this one has seen every command
+            return true;
+        }
+        Map<String, String> existingTriggers = new HashMap<>();
+        List<String> triggerLines = readResource(TRIGGERS_PATH);
+        if (triggerLines != null) {
+            for (String line : triggerLines) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) existingTriggers.put(line.substring(0, tab), line.substring(tab + 1));
+            }
+        }
+
+        boolean valid = true;
+        for (String command : existing) {
+            // Classes compiled this time have already been checked, and may not be commands any more
+            if (commands.contains(command)) continue;
+            TypeElement type = processingEnv.getElementUtils().getTypeElement(command.replace('$', '.'));
+            if (type == null || !isCommand(type)) continue;
+            commands.add(command);
+            String trigger = existingTriggers.get(command);
+            if (trigger != null && !addTrigger(type, command, trigger, type)) {
+                valid = false;
+            }
+        }
+        return valid;
+    }
+
+    // Returns the non-blank lines of a resource written by an earlier compile, or null if there isn't one
+    private List<String> readResource(String path) {
+        List<String> lines = new ArrayList<>();
+        try {
+            FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", path);
+            try (BufferedReader reader = new BufferedReader(file.openReader(true))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isBlank()) lines.add(line.trim());
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return lines;
+    }
+
+    private void writeIndex() {
+        if (!mergeExistingIndex()) return;
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_PATH);
+            try (Writer writer = file.openWriter()) {
+                for (String command : commands) {
+                    writer.write(command);
+                    writer.write('\n');
+                }
+            }
+            FileObject triggersFile = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", TRIGGERS_PATH);
+            try (Writer writer = triggersFile.openWriter()) {
+                for (String command : commands) {
+                    String trigger = commandTriggers.get(command);
+                    if (trigger == null) continue;
+                    writer.write(command);
+                    writer.write('\t');
+                    writer.write(trigger);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write the command index: " + e.getMessage());
+        }
+    }
+
+    private void error(Element element, String message, Object... args) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, String.format(message, args), element);
+    }
+
+}
@@ -10,19 +10,26 @@ import org.cascadebot.cascadebot.commandmeta.CommandContext;
 import org.cascadebot.cascadebot.commandmeta.ICommandCore;
 import org.cascadebot.cascadebot.commandmeta.ICommandMain;
 import org.cascadebot.cascadebot.commandmeta.Module;
-import org.cascadebot.cascadebot.data.objects.GuildData;
+import org.cascadebot.cascadebot.data.language.Locale;
+import org.cascadebot.cascadebot.permissions.CascadePermission;
 import org.cascadebot.cascadebot.utils.FormatUtils;
 import org.cascadebot.cascadebot.utils.pagination.Page;
 import org.cascadebot.cascadebot.utils.pagination.PageObjects;
 import org.cascadebot.cascadebot.utils.pagination.PageUtils;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class HelpCommand implements ICommandCore {
 
+    // The commands and their translations don't change once the bot has started, so these only need rendering once per locale
+    private final Map<Locale, Map<Module, List<HelpEntry>>> helpEntries = new ConcurrentHashMap<>();
+
     @Override
     public void onCommand(Member sender, CommandContext context) {
         if (context.getArgs().length == 0) {
@@ -60,20 +67,17 @@ public class HelpCommand implements ICommandCore {
 
     private List<Page> getModulePages(Module module, CommandContext context) {
         StringBuilder stringBuilder = new StringBuilder();
-        for (ICommandMain commandMain : CascadeBot.INS.getCommandManager().getCommandsByModule(module)) {
+        String prefix = context.getCoreSettings().getPrefix();
+        boolean hideNoPermission = context.getCoreSettings().isHelpHideCommandsNoPermission();
+        for (HelpEntry entry : getHelpEntries(module, context.getLocale())) {
             /*
              * Allows a permission to be displayed under one of the three conditions:
              * 1. If there is no permission for the command, it will always be displayed
              * 2. If the setting "helpHideCommandsNoPermission" is set to false, the command will always display regardless of permission
              * 3. If the sender of the help command has the permission for the command
              */
-            if (commandMain.getPermission() == null || !context.getCoreSettings().isHelpHideCommandsNoPermission() || context.hasPermission(commandMain.getPermission())) {
-                stringBuilder.append("`")
-                        .append(context.getCoreSettings().getPrefix())
-                        .append(commandMain.command(context.getLocale()))
-                        .append("` - ")
-                        .append(commandMain.description(context.getLocale()))
-                        .append("\n");
+            if (entry.permission == null || !hideNoPermission || context.hasPermission(entry.permission)) {
+                stringBuilder.append("`").append(prefix).append(entry.line);
             }
         }
         if (stringBuilder.length() == 0) {
@@ -89,4 +93,27 @@ public class HelpCommand implements ICommandCore {
         );
     }
 
+    private List<HelpEntry> getHelpEntries(Module module, Locale locale) {
+        return helpEntries.computeIfAbsent(locale, key -> new ConcurrentHashMap<>()).computeIfAbsent(module, key -> {
+            List<HelpEntry> entries = new ArrayList<>();
+            for (ICommandMain commandMain : CascadeBot.INS.getCommandManager().getCommandsByModule(module)) {
+                entries.add(new HelpEntry(commandMain.getPermission(), commandMain.command(locale) + "` - " + commandMain.description(locale) + "\n"));
+            }
+            return List.copyOf(entries);
+        });
+    }
+
+    private static class HelpEntry {
+
+        private final CascadePermission permission;
+        // Everything after the prefix, as the prefix can be different for every guild
+        private final String line;
+
+        private HelpEntry(CascadePermission permission, String line) {
+            this.permission = permission;
+            this.line = line;
+        }
+
+    }
+
 }
@@ -20,6 +20,7 @@ public class PrefixCommand implements ICommandCore {
             if (context.testForArg("reset")) {
                 if (context.hasPermission("prefix.reset")) {
                     context.getCoreSettings().setPrefix(Config.INS.getDefaultPrefix());
+                    context.getData().markDirty();
                     context.getTypedMessaging().replyInfo(context.i18n("commands.prefix.prefix_reset", Config.INS.getDefaultPrefix()));
                 } else {
                     context.getUIMessaging().sendPermissionError("prefix.reset");
@@ -37,6 +38,7 @@ public class PrefixCommand implements ICommandCore {
                 return;
             }
             context.getCoreSettings().setPrefix(newPrefix);
+            context.getData().markDirty();
             context.getTypedMessaging().replyInfo(context.i18n("commands.prefix.new_prefix", newPrefix));
         } else {
             context.getTypedMessaging().replyInfo(context.i18n("commands.prefix.current_prefix", context.getCoreSettings().getPrefix()));
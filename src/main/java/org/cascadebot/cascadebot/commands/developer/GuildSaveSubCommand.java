@@ -17,10 +17,10 @@ public class GuildSaveSubCommand implements ISubCommand {
     @Override
     public void onCommand(Member sender, CommandContext context) {
         if (context.getArgs().length == 0) {
-            GuildDataManager.replace(context.getGuild().getIdLong(), context.getData());
+            GuildDataManager.save(context.getData());
             context.getTypedMessaging().replySuccess("Saved **this guild's** information successfully!");
         } else if (context.getArg(0).equals("all")) {
-            GuildDataManager.getGuilds().asMap().forEach(GuildDataManager::replace);
+            GuildDataManager.getGuilds().asMap().values().forEach(GuildDataManager::save);
             context.getTypedMessaging().replySuccess("Saved **all** guild information successfully!");
         } else {
             if (!context.isArgLong(0)) {
@@ -32,7 +32,7 @@ public class GuildSaveSubCommand implements ISubCommand {
                 context.getTypedMessaging().replyDanger("Cannot find a guild to save!");
                 return;
             }
-            GuildDataManager.replace(guildData.getGuildId(), guildData);
+            GuildDataManager.save(guildData);
             context.getTypedMessaging().replySuccess("Saved guild information for guild **%s**!", context.getArg(0));
         }
     }
@@ -14,6 +14,8 @@ import org.cascadebot.cascadebot.UnicodeConstants;
 import org.cascadebot.cascadebot.commandmeta.CommandContext;
 import org.cascadebot.cascadebot.commandmeta.ICommandMain;
 import org.cascadebot.cascadebot.commandmeta.Module;
+import org.cascadebot.cascadebot.commandmeta.RateLimit;
+import org.cascadebot.cascadebot.commandmeta.RateLimitScope;
 import org.cascadebot.cascadebot.messaging.MessagingObjects;
 import org.cascadebot.cascadebot.permissions.CascadePermission;
 import org.cascadebot.cascadebot.utils.DiscordUtils;
@@ -22,6 +24,8 @@ import org.cascadebot.cascadebot.utils.buttons.Button;
 import org.cascadebot.cascadebot.utils.buttons.ButtonGroup;
 
 import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 
 public class DogCommand implements ICommandMain {
@@ -82,4 +86,9 @@ public class DogCommand implements ICommandMain {
         return CascadePermission.of("dog", true);
     }
 
+    @Override
+    public Set<RateLimit> getRateLimits() {
+        return Set.of(RateLimit.of(RateLimitScope.USER, 3, 15, TimeUnit.SECONDS));
+    }
+
 }
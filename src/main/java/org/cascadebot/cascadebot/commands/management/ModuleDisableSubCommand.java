@@ -27,6 +27,7 @@ public class ModuleDisableSubCommand implements ISubCommand {
         if (module != null) {
             try {
                 if (context.getData().getCoreSettings().disableModule(module)) {
+                    context.getData().markDirty();
                     // If module wasn't already disabled
                     context.getTypedMessaging().replySuccess(context.i18n("commands.module.disable.disabled", module.toString()));
                 } else {
@@ -27,6 +27,7 @@ public class ModuleEnableSubCommand implements ISubCommand {
         if (module != null) {
             try {
                 if (context.getCoreSettings().enableModule(module)) {
+                    context.getData().markDirty();
                     // If the module wasn't enabled
                     context.getTypedMessaging().replySuccess(context.i18n("commands.module.enable.enabled", module.toString()));
                 } else {
@@ -74,6 +74,7 @@ public class SettingsCommand implements ICommandMain {
                     } else {
                         return;
                     }
+                    context.getData().markDirty();
                     context.getTypedMessaging().replySuccess(context.i18n("commands.settings.setting_set", field.getName(), value));
                 } catch (IllegalAccessException e) {
                     context.getTypedMessaging().replyException(context.i18n("commands.settings.cannot_access"), e);
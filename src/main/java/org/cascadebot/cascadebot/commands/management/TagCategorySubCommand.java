@@ -27,6 +27,7 @@ public class TagCategorySubCommand implements ISubCommand {
         }
 
         tag.setCategory(context.getArg(1));
+        context.getData().markDirty();
         context.getTypedMessaging().replySuccess(context.i18n("commands.tag.category.successfully_set_tag", context.getArg(0), context.getArg(1)));
     }
 
@@ -20,6 +20,7 @@ public class TagCreateSubCommand implements ISubCommand {
             return;
         }
         context.getCoreSettings().addTag(context.getArg(0), new Tag(context.getMessage(1), "tag"));
+        context.getData().markDirty();
         context.getTypedMessaging().replySuccess(context.i18n("commands.tag.create.successfully_created_tag" ,context.getArg(0)));
     }
 
@@ -20,6 +20,7 @@ public class TagDeleteSubCommand implements ISubCommand {
         }
 
         if (context.getCoreSettings().removeTag(context.getArg(0))) {
+            context.getData().markDirty();
             context.getTypedMessaging().replySuccess(context.i18n("commands.tag.delete.successfully_deleted_tag"));
         } else {
             context.getTypedMessaging().replyDanger(context.i18n("commands.tag.delete.tag_doesnt_exist", context.getArg(0)));
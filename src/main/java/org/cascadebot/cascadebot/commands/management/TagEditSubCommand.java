@@ -27,6 +27,7 @@ public class TagEditSubCommand implements ISubCommand {
         }
 
         tag.setContent(context.getMessage(1));
+        context.getData().markDirty();
         context.getTypedMessaging().replySuccess(context.i18n("commands.tag.edit.successfully_edited_tag", context.getArg(0)));
     }
 
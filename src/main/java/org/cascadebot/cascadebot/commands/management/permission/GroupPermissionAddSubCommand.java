@@ -30,6 +30,7 @@ public class GroupPermissionAddSubCommand implements ISubCommand {
 
         PermissionCommandUtils.tryGetGroupFromString(context, context.getArg(0), group -> {
             if (group.addPermission(context.getArg(1))) {
+                context.getData().markDirty();
                 context.getTypedMessaging().replySuccess(context.i18n("commands.groupperms.add.success", context.getArg(1), group.getName() + "(" + group.getId() + ")"));
             } else {
                 context.getTypedMessaging().replyWarning(context.i18n("commands.groupperms.add.fail", context.getArg(1), group.getName() + "(" + group.getId() + ")"));
@@ -23,6 +23,7 @@ public class GroupPermissionCreateSubCommand implements ISubCommand {
         }
 
         Group group = context.getData().getPermissions().createGroup(context.getArg(0));
+        context.getData().markDirty();
         context.getTypedMessaging().replySuccess(context.i18n("commands.groupperms.create.success", context.getArg(0), group.getId()));
     }
 
@@ -18,6 +18,7 @@ public class GroupPermissionDeleteSubCommand implements ISubCommand {
 
         PermissionCommandUtils.tryGetGroupFromString(context, context.getArg(0), group -> {
             if (context.getData().getPermissions().deleteGroup(group.getId())) {
+                context.getData().markDirty();
                 // If the group existed to delete and has been successfully deleted.
                 context.getTypedMessaging().replySuccess(context.i18n("commands.groupperms.delete.success", group.getName(), group.getId()));
             } else {
@@ -32,6 +32,7 @@ public class GroupPermissionLinkRoleSubCommand implements ISubCommand {
 
         PermissionCommandUtils.tryGetGroupFromString(context, context.getArg(0), group -> {
             if (group.linkRole(role.getIdLong())) {
+                context.getData().markDirty();
                 context.getTypedMessaging().replySuccess(context.i18n("commands.groupperms.link.success", group.getName(), role.getName()));
             } else {
                 context.getTypedMessaging().replyWarning(context.i18n("commands.groupperms.link.fail", group.getName(), role.getName()));
@@ -37,6 +37,7 @@ public class GroupPermissionMoveSubCommand implements ISubCommand {
         PermissionCommandUtils.tryGetGroupFromString(context, context.getArg(0), group -> {
             if (context.getArgs().length > 1 && context.isArgInteger(1)) {
                 context.getData().getPermissions().moveGroup(group, context.getArgAsInteger(1));
+                context.getData().markDirty();
                 context.getTypedMessaging().replySuccess(context.i18n("commands.groupperms.move.moved", group.getName(), context.getArg(1)));
                 return;
             }
@@ -48,6 +49,7 @@ public class GroupPermissionMoveSubCommand implements ISubCommand {
                     return;
                 }
                 context.getData().getPermissions().moveGroup(context.getData().getPermissions().getGroups().get(currIndex.get()), currIndex.get() - 1);
+                context.getData().markDirty();
                 currIndex.addAndGet(-1);
                 message.editMessage(getGroupsList(group, context.getData().getPermissions().getGroups())).queue();
             }));
@@ -56,6 +58,7 @@ public class GroupPermissionMoveSubCommand implements ISubCommand {
                     return;
                 }
                 context.getData().getPermissions().moveGroup(context.getData().getPermissions().getGroups().get(currIndex.get()), currIndex.get() + 1);
+                context.getData().markDirty();
                 currIndex.addAndGet(1);
                 message.editMessage(getGroupsList(group, context.getData().getPermissions().getGroups())).queue();
             }));
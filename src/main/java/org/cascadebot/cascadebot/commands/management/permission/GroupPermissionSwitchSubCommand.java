@@ -38,6 +38,7 @@ public class GroupPermissionSwitchSubCommand implements ISubCommand {
         }
 
         context.getData().getPermissions().setMode(mode);
+        context.getData().markDirty();
         context.getTypedMessaging().replySuccess(context.i18n("commands.groupperms.switch.success", FormatUtils.formatEnum(mode, context.getLocale())));
     }
 
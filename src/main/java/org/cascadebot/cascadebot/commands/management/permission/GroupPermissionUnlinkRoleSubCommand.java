@@ -32,6 +32,7 @@ public class GroupPermissionUnlinkRoleSubCommand implements ISubCommand {
 
         PermissionCommandUtils.tryGetGroupFromString(context, context.getArg(0), group -> {
             if (group.unlinkRole(role.getIdLong())) {
+                context.getData().markDirty();
                 context.getTypedMessaging().replySuccess(context.i18n("commands.groupperms.unlink.success", group.getName(), role.getName()));
             } else {
                 context.getTypedMessaging().replyWarning(context.i18n("commands.groupperms.unlink.fail", group.getName(), role.getName()));
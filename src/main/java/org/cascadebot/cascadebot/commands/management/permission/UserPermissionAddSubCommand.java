@@ -41,6 +41,7 @@ public class UserPermissionAddSubCommand implements ISubCommand {
         }
 
         if (user.addPermission(context.getArg(1))) {
+            context.getData().markDirty();
             context.getTypedMessaging().replySuccess(context.i18n("commands.userperms.add.success", context.getArg(1), member.getUser().getAsTag()));
         } else {
             context.getTypedMessaging().replyWarning(context.i18n("commands.userperms.add.fail", context.getArg(1), member.getUser().getAsTag()));
@@ -38,12 +38,14 @@ public class UserPermissionGroupSubCommand implements ISubCommand {
             User user = context.getData().getPermissions().getPermissionUser(member);
             if (context.testForArg("put")) {
                 if (user.addGroup(group)) {
+                    context.getData().markDirty();
                     context.getTypedMessaging().replySuccess(context.i18n("commands.userperms.group.put.success", member.getUser().getAsTag(), group.getName()));
                 } else {
                     context.getTypedMessaging().replyWarning(context.i18n("commands.userperms.group.put.fail", member.getUser().getAsTag(), group.getName()));
                 }
             } else if (context.testForArg("remove")) {
                 if (user.removeGroup(group)) {
+                    context.getData().markDirty();
                     context.getTypedMessaging().replySuccess(context.i18n("commands.userperms.group.remove.success", member.getUser().getAsTag(), group.getName()));
                 } else {
                     context.getTypedMessaging().replyWarning(context.i18n("commands.userperms.group.remove.fail", member.getUser().getAsTag(), group.getName()));
@@ -35,6 +35,7 @@ public class UserPermissionRemoveSubCommand implements ISubCommand {
         User user = context.getData().getPermissions().getPermissionUser(member);
 
         if (user.removePermission(context.getArg(1))) {
+            context.getData().markDirty();
             context.getTypedMessaging().replySuccess(context.i18n("commands.userperms.remove.success", context.getArg(1), member.getUser().getAsTag()));
         } else {
             context.getTypedMessaging().replyWarning(context.i18n("commands.userperms.remove.fail", context.getArg(1), member.getUser().getAsTag()));
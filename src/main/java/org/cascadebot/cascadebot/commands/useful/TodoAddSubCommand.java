@@ -31,11 +31,13 @@ public class TodoAddSubCommand implements ISubCommand {
             } else {
                 context.getTypedMessaging().replyDanger(context.i18n("commands.todo.cannot_edit_no_owner"));
                 context.getData().getUsefulSettings().deleteTodoList(context.getArg(0));
+                context.getData().markDirty();
             }
             return;
         }
 
         int index = todoList.addTodoItem(context.getMessage(1)) + 1;
+        context.getData().markDirty();
         EmbedBuilder builder = MessagingObjects.getClearThreadLocalEmbedBuilder();
         builder.setTitle(context.i18n("commands.todo.add.embed_title"));
         builder.addField(context.i18n("commands.todo.embed_position_field"), String.valueOf(index), true);
@@ -37,6 +37,7 @@ public class TodoAddUserSubCommand implements ISubCommand {
         }
 
         todoList.addEditUser(target);
+        context.getData().markDirty();
 
         context.getTypedMessaging().replySuccess(context.i18n("commands.todo.adduser.added", target.getUser().getAsTag(), context.getArg(0)));
 
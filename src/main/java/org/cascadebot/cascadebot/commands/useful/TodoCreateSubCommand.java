@@ -22,6 +22,7 @@ public class TodoCreateSubCommand implements ISubCommand {
             return;
         }
 
+        context.getData().markDirty();
         context.getTypedMessaging().replySuccess(context.i18n("commands.todo.create.created", context.getArg(0)));
     }
 
@@ -36,6 +36,7 @@ public class TodoRemoveSubCommand implements ISubCommand {
             } else {
                 context.getTypedMessaging().replyDanger(context.i18n("commands.todo.cannot_edit_no_owner"));
                 context.getData().getUsefulSettings().deleteTodoList(context.getArg(0));
+                context.getData().markDirty();
             }
             return;
         }
@@ -60,6 +61,7 @@ public class TodoRemoveSubCommand implements ISubCommand {
         }
 
         todoList.setCurrentItem(Math.max(todoList.getCurrentItem() - 1, 0));
+        context.getData().markDirty();
 
         todoList.edit(context);
     }
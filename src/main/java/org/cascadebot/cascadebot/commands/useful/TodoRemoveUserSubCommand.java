@@ -37,6 +37,7 @@ public class TodoRemoveUserSubCommand implements ISubCommand {
         }
 
         todoList.removeEditUser(target);
+        context.getData().markDirty();
 
         context.getTypedMessaging().replySuccess(context.i18n("commands.todo.removeuser.removed", target.getUser().getAsTag(), context.getArg(0)));
 
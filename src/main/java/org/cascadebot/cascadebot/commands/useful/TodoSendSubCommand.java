@@ -52,6 +52,7 @@ public class TodoSendSubCommand implements ISubCommand {
             } else {
                 context.getTypedMessaging().replyDanger(context.i18n("commands.todo.cannot_edit_no_owner"));
                 context.getData().getUsefulSettings().deleteTodoList(context.getArg(0));
+                context.getData().markDirty();
             }
             return;
         }
@@ -36,6 +36,7 @@ public class TodoViewSubCommand implements ISubCommand {
             } else {
                 context.getTypedMessaging().replyDanger(context.i18n("commands.todo.cannot_edit_no_owner"));
                 context.getData().getUsefulSettings().deleteTodoList(context.getArg(0));
+                context.getData().markDirty();
             }
             return;
         }
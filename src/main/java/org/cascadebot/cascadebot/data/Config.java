@@ -18,6 +18,11 @@ import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.cascadebot.cascadebot.CascadeBot;
 import org.cascadebot.cascadebot.ShutdownHandler;
+import org.cascadebot.cascadebot.commandmeta.CommandExecutionMode;
+import org.cascadebot.cascadebot.commandmeta.RateLimit;
+import org.cascadebot.cascadebot.commandmeta.RateLimitScope;
+import org.cascadebot.cascadebot.data.database.StorageBackend;
+import org.cascadebot.cascadebot.data.managers.GuildDataInvalidator;
 import org.cascadebot.cascadebot.messaging.NoOpWebhookClient;
 import org.cascadebot.cascadebot.music.MusicHandler;
 import org.cascadebot.cascadebot.utils.LogbackUtils;
@@ -33,9 +38,11 @@ import java.net.URISyntaxException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Getter
 public class Config {
@@ -71,9 +78,45 @@ public class Config {
     private boolean ssl;
 
     private String connectionString;
+    private StorageBackend storageBackend;
+    private String storageFile;
+    private long slowDatabaseCommandThreshold;
 
     private int shardNum;
 
+    private CommandExecutionMode commandExecutionMode;
+    private int commandWorkers;
+    private int commandMaxInFlightPerGuild;
+    private int commandMaxQueuedPerGuild;
+
+    private Map<RateLimitScope, RateLimit> defaultRateLimits;
+
+    private long slowCommandThreshold;
+
+    private long guildFlushInterval;
+    private int guildFlushBatchSize;
+    private int guildFlushMaxPending;
+
+    private boolean prewarmEnabled;
+    private int prewarmBatchSize;
+    private int prewarmConcurrency;
+    private double prewarmBatchesPerSecond;
+
+    private long shutdownFlushDeadline;
+    private int shutdownFlushThreads;
+    private String unsavedGuildsFile;
+
+    private GuildDataInvalidator.Mode cacheInvalidationMode;
+    private long cacheInvalidationPollInterval;
+
+    private boolean guildSnapshotsEnabled;
+    private String guildSnapshotsFile;
+    private long guildSnapshotsMaxSize;
+
+    private long guildCacheMaxWeight;
+    private long guildCacheExpiry;
+    private long guildCacheReweighInterval;
+
     private String guildWelcomeMessage;
     private String guildGoodbyeMessage;
 
@@ -148,7 +191,18 @@ public class Config {
             return;
         }
 
-        if (config.contains("database.connection_string") && !config.getString("database.connection_string").isBlank()) {
+        String backend = config.getString("storage.backend", "mongo");
+        this.storageBackend = EnumUtils.getEnum(StorageBackend.class, backend.toUpperCase());
+        if (this.storageBackend == null) {
+            LOG.warn("Unknown storage backend {}, using mongo", backend);
+            this.storageBackend = StorageBackend.MONGO;
+        }
+        String file = config.getString("storage.file", "");
+        this.storageFile = file.isBlank() ? null : file;
+
+        if (storageBackend != StorageBackend.MONGO) {
+            LOG.warn("Using the {} storage backend, nothing will be saved to the database!", backend);
+        } else if (config.contains("database.connection_string") && !config.getString("database.connection_string").isBlank()) {
             this.connectionString = config.getString("database.connection_string");
         } else {
             this.username = config.getString("database.username");
@@ -164,11 +218,65 @@ public class Config {
             }
             this.ssl = warnOnDefault(config, "database.ssl", false);
         }
+        this.slowDatabaseCommandThreshold = config.getLong("database.slow_command_ms", 500);
+
+        this.defaultRateLimits = new EnumMap<>(RateLimitScope.class);
+        for (RateLimitScope scope : RateLimitScope.values()) {
+            String path = "rate_limits." + scope.name().toLowerCase();
+            int capacity = config.getInt(path + ".capacity", 0);
+            int periodSeconds = config.getInt(path + ".period_seconds", 0);
+            // A scope without a capacity or period doesn't get a default limit
+            if (capacity > 0 && periodSeconds > 0) {
+                this.defaultRateLimits.put(scope, RateLimit.of(scope, capacity, periodSeconds, TimeUnit.SECONDS));
+            }
+        }
+
+        this.slowCommandThreshold = config.getLong("slow_command_threshold", 0);
+
+        this.guildFlushInterval = config.getLong("write_behind.flush_interval_ms", 5000);
+        this.guildFlushBatchSize = config.getInt("write_behind.batch_size", 200);
+        this.guildFlushMaxPending = config.getInt("write_behind.max_pending", 2000);
+
+        this.prewarmEnabled = config.getBoolean("prewarm.enabled", false);
+        this.prewarmBatchSize = config.getInt("prewarm.batch_size", 250);
+        this.prewarmConcurrency = config.getInt("prewarm.max_concurrent_batches", 2);
+        this.prewarmBatchesPerSecond = config.getDouble("prewarm.batches_per_second", 4);
+
+        this.shutdownFlushDeadline = config.getLong("shutdown_flush.deadline_seconds", 20);
+        this.shutdownFlushThreads = config.getInt("shutdown_flush.threads", 4);
+        this.unsavedGuildsFile = config.getString("shutdown_flush.unsaved_file", "unsaved_guilds.jsonl");
+
+        String invalidationMode = config.getString("cache_invalidation.mode", "change_stream");
+        this.cacheInvalidationMode = EnumUtils.getEnum(GuildDataInvalidator.Mode.class, invalidationMode.toUpperCase());
+        if (this.cacheInvalidationMode == null) {
+            LOG.warn("Unknown cache invalidation mode {}, using change_stream", invalidationMode);
+            this.cacheInvalidationMode = GuildDataInvalidator.Mode.CHANGE_STREAM;
+        }
+        this.cacheInvalidationPollInterval = config.getLong("cache_invalidation.poll_interval_seconds", 30);
+
+        this.guildSnapshotsEnabled = config.getBoolean("guild_snapshots.enabled", false);
+        this.guildSnapshotsFile = config.getString("guild_snapshots.file", "guild_snapshots.dat");
+        this.guildSnapshotsMaxSize = config.getLong("guild_snapshots.max_size_mb", 256) * 1024 * 1024;
+
+        this.guildCacheMaxWeight = config.getLong("guild_cache.max_size_mb", 512) * 1024 * 1024;
+        this.guildCacheExpiry = config.getLong("guild_cache.expire_after_access_minutes", 5);
+        this.guildCacheReweighInterval = config.getLong("guild_cache.reweigh_interval_seconds", 60);
 
         this.prometheusPort = config.getInt("stats_port", 6060);
 
         shardNum = warnOnDefault(config, "shard_num", -1);
 
+        String executionMode = config.getString("command_scheduler.mode", "scheduler");
+        if (EnumUtils.isValidEnumIgnoreCase(CommandExecutionMode.class, executionMode)) {
+            this.commandExecutionMode = EnumUtils.getEnumIgnoreCase(CommandExecutionMode.class, executionMode);
+        } else {
+            LOG.warn("Invalid command execution mode \"{}\"! Using the default scheduler instead.", executionMode);
+            this.commandExecutionMode = CommandExecutionMode.SCHEDULER;
+        }
+        this.commandWorkers = config.getInt("command_scheduler.workers", 16);
+        this.commandMaxInFlightPerGuild = config.getInt("command_scheduler.max_in_flight_per_guild", 2);
+        this.commandMaxQueuedPerGuild = config.getInt("command_scheduler.max_queued_per_guild", 10);
+
         if (config.contains("official_server")) {
             officialServerId = config.getLong("official_server");
         } else {
@@ -323,10 +431,118 @@ public class Config {
         return connectionString;
     }
 
+    public StorageBackend getStorageBackend() {
+        return storageBackend;
+    }
+
+    public String getStorageFile() {
+        return storageFile;
+    }
+
+    public long getSlowDatabaseCommandThreshold() {
+        return slowDatabaseCommandThreshold;
+    }
+
     public int getShardNum() {
         return shardNum;
     }
 
+    public CommandExecutionMode getCommandExecutionMode() {
+        return commandExecutionMode;
+    }
+
+    public int getCommandWorkers() {
+        return commandWorkers;
+    }
+
+    public int getCommandMaxInFlightPerGuild() {
+        return commandMaxInFlightPerGuild;
+    }
+
+    public int getCommandMaxQueuedPerGuild() {
+        return commandMaxQueuedPerGuild;
+    }
+
+    public Map<RateLimitScope, RateLimit> getDefaultRateLimits() {
+        return defaultRateLimits;
+    }
+
+    public long getSlowCommandThreshold() {
+        return slowCommandThreshold;
+    }
+
+    public long getGuildFlushInterval() {
+        return guildFlushInterval;
+    }
+
+    public int getGuildFlushBatchSize() {
+        return guildFlushBatchSize;
+    }
+
+    public int getGuildFlushMaxPending() {
+        return guildFlushMaxPending;
+    }
+
+    public boolean isPrewarmEnabled() {
+        return prewarmEnabled;
+    }
+
+    public int getPrewarmBatchSize() {
+        return prewarmBatchSize;
+    }
+
+    public int getPrewarmConcurrency() {
+        return prewarmConcurrency;
+    }
+
+    public double getPrewarmBatchesPerSecond() {
+        return prewarmBatchesPerSecond;
+    }
+
+    public long getShutdownFlushDeadline() {
+        return shutdownFlushDeadline;
+    }
+
+    public int getShutdownFlushThreads() {
+        return shutdownFlushThreads;
+    }
+
+    public String getUnsavedGuildsFile() {
+        return unsavedGuildsFile;
+    }
+
+    public GuildDataInvalidator.Mode getCacheInvalidationMode() {
+        return cacheInvalidationMode;
+    }
+
+    public long getCacheInvalidationPollInterval() {
+        return cacheInvalidationPollInterval;
+    }
+
+    public boolean isGuildSnapshotsEnabled() {
+        return guildSnapshotsEnabled;
+    }
+
+    public String getGuildSnapshotsFile() {
+        return guildSnapshotsFile;
+    }
+
+    public long getGuildSnapshotsMaxSize() {
+        return guildSnapshotsMaxSize;
+    }
+
+    public long getGuildCacheMaxWeight() {
+        return guildCacheMaxWeight;
+    }
+
+    public long getGuildCacheExpiry() {
+        return guildCacheExpiry;
+    }
+
+    public long getGuildCacheReweighInterval() {
+        return guildCacheReweighInterval;
+    }
+
     public List<MusicHandler.MusicNode> getMusicNodes() {
         return musicNodes;
     }
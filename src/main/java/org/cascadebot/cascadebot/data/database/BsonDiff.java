@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.data.database;
+
+import com.mongodb.client.model.Updates;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Works out the smallest set of update operators that turn one document into another.
+ * <p>
+ * Sub-documents are compared field by field so only the fields that changed are sent. Arrays that have only had
+ * elements added to the end use {@code $push}, arrays that are the same length have each changed element set by
+ * index, and any other array change sets the whole array. Documents with keys that can't be used in a field path
+ * (empty, containing a {@code .} or starting with {@code $}) are always set as a whole.
+ */
+public final class BsonDiff {
+
+    private BsonDiff() {
+    }
+
+    /**
+     * Compares two versions of a document.
+     *
+     * @param before  The document as it is in the database.
+     * @param after   The document as it should be.
+     * @param ignored Top level fields to leave out of the comparison.
+     * @return The update operators needed, which is empty if nothing changed.
+     */
+    public static List<Bson> diff(BsonDocument before, BsonDocument after, Set<String> ignored) {
+        List<Bson> updates = new ArrayList<>();
+        for (Map.Entry<String, BsonValue> entry : after.entrySet()) {
+            String key = entry.getKey();
+            if (ignored.contains(key)) continue;
+            BsonValue old = before.get(key);
+            if (old == null) {
+                updates.add(Updates.set(key, entry.getValue()));
+            } else {
+                diffValue(key, old, entry.getValue(), updates);
+            }
+        }
+        for (String key : before.keySet()) {
+            if (!ignored.contains(key) && !after.containsKey(key)) {
+                updates.add(Updates.unset(key));
+            }
+        }
+        return updates;
+    }
+
+    private static void diffValue(String path, BsonValue before, BsonValue after, List<Bson> updates) {
+        if (before.equals(after)) return;
+        if (before.isDocument() && after.isDocument() && hasPathKeys(before.asDocument()) && hasPathKeys(after.asDocument())) {
+            diffDocument(path, before.asDocument(), after.asDocument(), updates);
+        } else if (before.isArray() && after.isArray()) {
+            diffArray(path, before.asArray(), after.asArray(), updates);
+        } else {
+            updates.add(Updates.set(path, after));
+        }
+    }
+
+    private static void diffDocument(String path, BsonDocument before, BsonDocument after, List<Bson> updates) {
+        for (Map.Entry<String, BsonValue> entry : after.entrySet()) {
+            BsonValue old = before.get(entry.getKey());
+            if (old == null) {
+                updates.add(Updates.set(path + "." + entry.getKey(), entry.getValue()));
+            } else {
+                diffValue(path + "." + entry.getKey(), old, entry.getValue(), updates);
+            }
+        }
+        for (String key : before.keySet()) {
+            if (!after.containsKey(key)) {
+                updates.add(Updates.unset(path + "." + key));
+            }
+        }
+    }
+
+    private static void diffArray(String path, BsonArray before, BsonArray after, List<Bson> updates) {
+        int size = before.size();
+        if (after.size() > size && after.getValues().subList(0, size).equals(before.getValues())) {
+            updates.add(Updates.pushEach(path, after.getValues().subList(size, after.size())));
+        } else if (after.size() == size) {
+            for (int i = 0; i < size; i++) {
+                diffValue(path + "." + i, before.get(i), after.get(i), updates);
+            }
+        } else {
+            updates.add(Updates.set(path, after));
+        }
+    }
+
+    private static boolean hasPathKeys(BsonDocument document) {
+        for (String key : document.keySet()) {
+            if (key.isEmpty() || key.indexOf('.') != -1 || key.charAt(0) == '$') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
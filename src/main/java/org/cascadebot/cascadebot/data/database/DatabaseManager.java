@@ -19,6 +19,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.bson.Document;
 import org.bson.codecs.configuration.CodecRegistries;
 import org.bson.codecs.configuration.CodecRegistry;
+import org.cascadebot.cascadebot.data.Config;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,7 +33,8 @@ public class DatabaseManager {
 
     private final MongoClient SYNC_CLIENT;
     private final com.mongodb.async.client.MongoClient ASYNC_CLIENT;
-    private final CodecRegistry CODEC_REGISTRY = CodecRegistries.fromRegistries(
+    // Static so guilds can be encoded when the database isn't used
+    private static final CodecRegistry CODEC_REGISTRY = CodecRegistries.fromRegistries(
             MongoClientSettings.getDefaultCodecRegistry(),
             CodecRegistries.fromProviders(PojoCodecProvider.builder().register(
                     "org.cascadebot.cascadebot.data.objects",
@@ -68,8 +70,9 @@ public class DatabaseManager {
         settingsBuilder.retryWrites(true);
 
         settingsBuilder.codecRegistry(CODEC_REGISTRY);
-        SYNC_CLIENT = MongoClients.create(settingsBuilder.build());
-        ASYNC_CLIENT = com.mongodb.async.client.MongoClients.create(settingsBuilder.build());
+        MongoClientSettings settings = settingsBuilder.build();
+        SYNC_CLIENT = MongoClients.create(instrument(settings, "sync"));
+        ASYNC_CLIENT = com.mongodb.async.client.MongoClients.create(instrument(settings, "async"));
     }
 
     public DatabaseManager(String connectionString) {
@@ -82,8 +85,18 @@ public class DatabaseManager {
 
         builder.codecRegistry(CODEC_REGISTRY);
 
-        SYNC_CLIENT = MongoClients.create(builder.build());
-        ASYNC_CLIENT = com.mongodb.async.client.MongoClients.create(builder.build());
+        MongoClientSettings settings = builder.build();
+        SYNC_CLIENT = MongoClients.create(instrument(settings, "sync"));
+        ASYNC_CLIENT = com.mongodb.async.client.MongoClients.create(instrument(settings, "async"));
+    }
+
+    // Each client gets its own listener so their metrics can be told apart
+    private static MongoClientSettings instrument(MongoClientSettings settings, String client) {
+        MongoMetricsListener listener = new MongoMetricsListener(client, Config.INS.getSlowDatabaseCommandThreshold());
+        return MongoClientSettings.builder(settings)
+                .addCommandListener(listener)
+                .applyToConnectionPoolSettings(poolBuilder -> poolBuilder.addConnectionPoolListener(listener))
+                .build();
     }
 
     public MongoClient getSyncClient() {
@@ -116,7 +129,7 @@ public class DatabaseManager {
         });
     }
 
-    public CodecRegistry getCodecRegistry() {
+    public static CodecRegistry getCodecRegistry() {
         return CODEC_REGISTRY;
     }
 
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.data.database;
+
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Where guild data is kept. Guilds are passed in and out as raw BSON, so the caching and change tracking in
+ * {@link org.cascadebot.cascadebot.data.managers.GuildDataManager} work the same whatever the backend is.
+ * <p>
+ * Every guild document has its guild ID as {@code _id} and a {@code stateLock} that changes on every write.
+ */
+public interface GuildDataStore {
+
+    /**
+     * Finds a guild.
+     *
+     * @param guildId The ID of the guild.
+     * @return A future that completes with the guild's document, or null if it isn't stored.
+     */
+    CompletableFuture<RawBsonDocument> find(long guildId);
+
+    /**
+     * Finds several guilds at once.
+     *
+     * @param guildIds The IDs of the guilds.
+     * @return A future that completes with the documents of the guilds that are stored, in no particular order.
+     */
+    CompletableFuture<List<RawBsonDocument>> findAll(Collection<Long> guildIds);
+
+    /**
+     * Finds the stored stateLock of a guild without reading the rest of it.
+     *
+     * @param guildId The ID of the guild.
+     * @return A future that completes with the stateLock, or null if the guild isn't stored.
+     */
+    CompletableFuture<BsonValue> findStateLock(long guildId);
+
+    /**
+     * Finds the stored stateLocks of several guilds. This blocks until they have been read.
+     *
+     * @param guildIds The IDs of the guilds.
+     * @return The stateLocks by guild ID. Guilds that aren't stored are left out.
+     */
+    Map<Long, BsonValue> findStateLocks(Collection<Long> guildIds);
+
+    /**
+     * Stores a new guild unless it is already stored.
+     *
+     * @param document The guild's document.
+     * @return A future that completes with the stored document. This is the given document if it was inserted, or
+     * the one that was already stored otherwise.
+     */
+    CompletableFuture<RawBsonDocument> insert(RawBsonDocument document);
+
+    /**
+     * Applies a batch of writes. This blocks until they have finished.
+     *
+     * @param writes The writes, at most one for each guild.
+     * @return The IDs of the guilds whose conditional writes weren't applied because the stored stateLock wasn't
+     * one of the expected ones.
+     * @throws RuntimeException If the batch failed. Any of the writes may or may not have been applied.
+     */
+    Set<Long> write(List<GuildDataWrite> writes);
+
+    /**
+     * @return Whether other processes can change the guilds in this store, so cached guilds need to be checked
+     * for changes.
+     */
+    boolean isShared();
+
+    /**
+     * Releases anything the store has open. Called once everything has been written on shutdown.
+     */
+    default void close() {
+    }
+
+}
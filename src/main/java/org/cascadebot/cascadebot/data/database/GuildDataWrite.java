@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.data.database;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+
+import java.util.List;
+
+/**
+ * A write of one guild to a {@link GuildDataStore}.
+ * <p>
+ * The whole new document is always included. Stores that can apply partial updates may use {@link #getUpdates()}
+ * instead, which turn the stored document into the new one.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class GuildDataWrite {
+
+    private final long guildId;
+    // The guild as it should be after the write
+    private final RawBsonDocument document;
+    // The update operators that give the same result, or null if this is a whole replace
+    private final List<Bson> updates;
+    // The stateLocks the stored guild must have for the write to be applied, or empty to always apply it
+    private final List<BsonValue> expectedStateLocks;
+
+    /**
+     * Stores the guild whatever is already stored.
+     */
+    public static GuildDataWrite replace(long guildId, RawBsonDocument document) {
+        return new GuildDataWrite(guildId, document, null, List.of());
+    }
+
+    /**
+     * Replaces the guild if its stored stateLock is any of {@code expectedStateLocks}.
+     */
+    public static GuildDataWrite conditionalReplace(long guildId, RawBsonDocument document, List<BsonValue> expectedStateLocks) {
+        return new GuildDataWrite(guildId, document, null, List.copyOf(expectedStateLocks));
+    }
+
+    /**
+     * Applies {@code updates} to the guild if its stored stateLock is {@code expectedStateLock}.
+     */
+    public static GuildDataWrite update(long guildId, RawBsonDocument document, List<Bson> updates, BsonValue expectedStateLock) {
+        return new GuildDataWrite(guildId, document, List.copyOf(updates), List.of(expectedStateLock));
+    }
+
+    public BsonValue getStateLock() {
+        return document.get("stateLock");
+    }
+
+    public boolean isConditional() {
+        return !expectedStateLocks.isEmpty();
+    }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.data.database;
+
+import org.bson.RawBsonDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A local copy of the last known database state of each guild, so guilds can be loaded from disk after a restart
+ * instead of from the database.
+ * <p>
+ * The file is a log of records, each being a header (a marker, the guild ID and the length) followed by the raw
+ * BSON of the guild. Saving a guild appends a new record and the index is updated to point at it, so only changed
+ * guilds are written. The file is read through a memory mapping. When it is opened the log is scanned to rebuild
+ * the index, stopping at the first broken record, and it is compacted when most of it is old records.
+ * <p>
+ * This is only a cache: snapshots may be out of date and callers must check them against the database.
+ */
+public class GuildSnapshotStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GuildSnapshotStore.class);
+
+    private static final int RECORD_MARKER = 0x43425331;
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES;
+    // A mapping can't be bigger than this
+    private static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+
+    private final Path file;
+    private final long maxSize;
+
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private long size;
+    private long liveBytes;
+    // Guild ID -> offset of its latest record
+    private final Map<Long, Long> index = new HashMap<>();
+
+    /**
+     * Opens the snapshot file, creating it if it doesn't exist.
+     *
+     * @param file    The file to store the snapshots in.
+     * @param maxSize The size in bytes the file is compacted at.
+     * @throws IOException If the file couldn't be opened.
+     */
+    public GuildSnapshotStore(Path file, long maxSize) throws IOException {
+        this.file = file;
+        this.maxSize = Math.min(maxSize, MAX_FILE_SIZE);
+        open();
+        if (size > 2 * liveBytes) {
+            compact();
+        }
+        LOGGER.info("Opened guild snapshots at {} with {} guilds ({} bytes)", file.toAbsolutePath(), index.size(), size);
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        size = channel.size();
+        if (size > MAX_FILE_SIZE) {
+            LOGGER.warn("Guild snapshot file {} is too big to map, starting again", file.toAbsolutePath());
+            channel.truncate(0);
+            size = 0;
+        }
+        remap();
+        scan();
+    }
+
+    private void scan() throws IOException {
+        index.clear();
+        liveBytes = 0;
+        long position = 0;
+        Map<Long, Integer> lengths = new HashMap<>();
+        while (position + HEADER_SIZE <= size) {
+            if (mapped.getInt((int) position) != RECORD_MARKER) break;
+            long guildId = mapped.getLong((int) position + Integer.BYTES);
+            int length = mapped.getInt((int) position + Integer.BYTES + Long.BYTES);
+            long end = position + HEADER_SIZE + length;
+            if (length < 0 || end > size) break;
+
+            Integer previous = lengths.put(guildId, length);
+            if (previous != null) liveBytes -= HEADER_SIZE + previous;
+            if (length == 0) {
+                // A removed guild
+                index.remove(guildId);
+                lengths.remove(guildId);
+            } else {
+                index.put(guildId, position);
+                liveBytes += HEADER_SIZE + length;
+            }
+            position = end;
+        }
+        if (position < size) {
+            // The rest of the file was only partly written, most likely because we were killed while writing
+            LOGGER.warn("Discarding {} bytes of broken guild snapshots from {}", size - position, file.toAbsolutePath());
+            channel.truncate(position);
+            size = position;
+            remap();
+        }
+    }
+
+    private void remap() throws IOException {
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    // Appends don't remap the file straight away as most records are never read back before a restart
+    private void ensureMapped() throws IOException {
+        if (mapped.capacity() < size) {
+            remap();
+        }
+    }
+
+    /**
+     * Gets the last saved snapshot of a guild.
+     *
+     * @param guildId The ID of the guild.
+     * @return The guild as it was last saved, or null if there isn't a snapshot for it.
+     */
+    public synchronized RawBsonDocument get(long guildId) {
+        Long offset = index.get(guildId);
+        if (offset == null) return null;
+        try {
+            ensureMapped();
+        } catch (IOException e) {
+            LOGGER.warn("Could not read the snapshot for guild {}", guildId, e);
+            return null;
+        }
+        byte[] bytes = new byte[(int) recordSize(offset) - HEADER_SIZE];
+        ByteBuffer record = mapped.duplicate();
+        record.position((int) (offset + HEADER_SIZE));
+        record.get(bytes);
+        return new RawBsonDocument(bytes);
+    }
+
+    /**
+     * Saves a snapshot of a guild.
+     *
+     * @param guildId  The ID of the guild.
+     * @param document The guild as it is in the database.
+     */
+    public synchronized void put(long guildId, RawBsonDocument document) {
+        ByteBuffer body = document.getByteBuffer().asNIO();
+        int length = body.remaining();
+        try {
+            ensureMapped();
+            long offset = append(guildId, body);
+            Long previous = index.put(guildId, offset);
+            if (previous != null) liveBytes -= recordSize(previous);
+            liveBytes += HEADER_SIZE + length;
+        } catch (IOException e) {
+            LOGGER.warn("Could not save the snapshot for guild {}", guildId, e);
+        }
+    }
+
+    /**
+     * Removes the snapshot of a guild, for when the snapshot is known to be out of date.
+     *
+     * @param guildId The ID of the guild.
+     */
+    public synchronized void remove(long guildId) {
+        if (!index.containsKey(guildId)) return;
+        try {
+            ensureMapped();
+            liveBytes -= recordSize(index.remove(guildId));
+            append(guildId, ByteBuffer.allocate(0));
+        } catch (IOException e) {
+            LOGGER.warn("Could not remove the snapshot for guild {}", guildId, e);
+        }
+    }
+
+    private long recordSize(long offset) {
+        return HEADER_SIZE + mapped.getInt((int) (offset + Integer.BYTES + Long.BYTES));
+    }
+
+    private long append(long guildId, ByteBuffer body) throws IOException {
+        int length = body.remaining();
+        if (size + HEADER_SIZE + length > maxSize) {
+            compact();
+            if (size + HEADER_SIZE + length > maxSize) {
+                throw new IOException("The guild snapshot file is full");
+            }
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(RECORD_MARKER).putLong(guildId).putInt(length).flip();
+        long offset = size;
+        long position = offset;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+        while (body.hasRemaining()) {
+            position += channel.write(body, position);
+        }
+        size = position;
+        return offset;
+    }
+
+    // Rewrites the file with only the latest record for each guild
+    private void compact() throws IOException {
+        ensureMapped();
+        Path temp = file.resolveSibling(file.getFileName() + ".compact");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (long offset : index.values()) {
+                ByteBuffer record = mapped.duplicate();
+                record.position((int) offset).limit((int) (offset + recordSize(offset)));
+                while (record.hasRemaining()) {
+                    out.write(record);
+                }
+            }
+        }
+        long before = size;
+        channel.close();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        open();
+        LOGGER.info("Compacted guild snapshots from {} to {} bytes", before, size);
+    }
+
+    public synchronized void close() {
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.warn("Could not close the guild snapshot file", e);
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.data.database;
+
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps guilds in memory in this process, for running the bot without a database when testing or profiling.
+ * <p>
+ * If a file is given, every write is also appended to it (in the same format as the guild snapshots) and guilds
+ * are read back from it when they aren't in memory, so data survives restarts. Nothing else can see or change the
+ * data, so cached guilds never need to be checked for changes.
+ */
+public class MemoryGuildDataStore implements GuildDataStore {
+
+    private final Map<Long, RawBsonDocument> guilds = new ConcurrentHashMap<>();
+    private final GuildSnapshotStore file;
+
+    public MemoryGuildDataStore() {
+        this.file = null;
+    }
+
+    /**
+     * @param file The file to keep the guilds in.
+     * @throws IOException If the file couldn't be opened.
+     */
+    public MemoryGuildDataStore(Path file) throws IOException {
+        this.file = new GuildSnapshotStore(file, Long.MAX_VALUE);
+    }
+
+    private RawBsonDocument get(long guildId) {
+        if (file == null) return guilds.get(guildId);
+        return guilds.computeIfAbsent(guildId, file::get);
+    }
+
+    @Override
+    public CompletableFuture<RawBsonDocument> find(long guildId) {
+        return CompletableFuture.completedFuture(get(guildId));
+    }
+
+    @Override
+    public CompletableFuture<List<RawBsonDocument>> findAll(Collection<Long> guildIds) {
+        List<RawBsonDocument> documents = new ArrayList<>(guildIds.size());
+        for (long guildId : guildIds) {
+            RawBsonDocument document = get(guildId);
+            if (document != null) documents.add(document);
+        }
+        return CompletableFuture.completedFuture(documents);
+    }
+
+    @Override
+    public CompletableFuture<BsonValue> findStateLock(long guildId) {
+        RawBsonDocument document = get(guildId);
+        return CompletableFuture.completedFuture(document == null ? null : document.get("stateLock"));
+    }
+
+    @Override
+    public Map<Long, BsonValue> findStateLocks(Collection<Long> guildIds) {
+        Map<Long, BsonValue> locks = new HashMap<>();
+        for (long guildId : guildIds) {
+            RawBsonDocument document = get(guildId);
+            if (document != null) locks.put(guildId, document.get("stateLock"));
+        }
+        return locks;
+    }
+
+    @Override
+    public CompletableFuture<RawBsonDocument> insert(RawBsonDocument document) {
+        long guildId = document.get("_id").asInt64().getValue();
+        return CompletableFuture.completedFuture(guilds.compute(guildId, (id, cached) -> {
+            RawBsonDocument current = cached != null || file == null ? cached : file.get(id);
+            return current != null ? current : store(id, document);
+        }));
+    }
+
+    @Override
+    public Set<Long> write(List<GuildDataWrite> writes) {
+        Set<Long> conflicts = new HashSet<>();
+        for (GuildDataWrite write : writes) {
+            guilds.compute(write.getGuildId(), (id, cached) -> {
+                RawBsonDocument current = cached != null || file == null ? cached : file.get(id);
+                if (write.isConditional() && (current == null || !write.getExpectedStateLocks().contains(current.get("stateLock")))) {
+                    conflicts.add(id);
+                    return current;
+                }
+                // The document is what the updates would have produced, so there's no need to apply them
+                return store(id, write.getDocument());
+            });
+        }
+        return conflicts;
+    }
+
+    private RawBsonDocument store(long guildId, RawBsonDocument document) {
+        if (file != null) {
+            file.put(guildId, document);
+        }
+        return document;
+    }
+
+    @Override
+    public boolean isShared() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+        if (file != null) {
+            file.close();
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.data.database;
+
+import org.bson.types.ObjectId;
+import org.cascadebot.cascadebot.data.objects.Playlist;
+import org.cascadebot.cascadebot.data.objects.PlaylistType;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps playlists in memory in this process, for running the bot without a database. Playlists are lost when the
+ * bot stops.
+ */
+public class MemoryPlaylistStore implements PlaylistStore {
+
+    private final Map<ObjectId, Playlist> playlists = new ConcurrentHashMap<>();
+
+    @Override
+    public Iterable<Playlist> getPlaylists(long ownerId, PlaylistType scope) {
+        return playlists.values().stream()
+                .filter(playlist -> playlist.getOwnerId() == ownerId && playlist.getScope() == scope)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void insert(Playlist playlist) {
+        playlists.putIfAbsent(playlist.getPlaylistID(), playlist);
+    }
+
+    @Override
+    public void replace(Playlist playlist) {
+        playlists.replace(playlist.getPlaylistID(), playlist);
+    }
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.data.database;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import org.cascadebot.cascadebot.CascadeBot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+
+/**
+ * Stores guilds in a MongoDB collection. Reads use the async client and writes use the sync client, as writes are
+ * only made from the flusher threads.
+ */
+public class MongoGuildDataStore implements GuildDataStore {
+
+    private static final ReplaceOptions UPSERT = new ReplaceOptions().upsert(true);
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+
+    private final String collection;
+
+    public MongoGuildDataStore(String collection) {
+        this.collection = collection;
+    }
+
+    @Override
+    public CompletableFuture<RawBsonDocument> find(long guildId) {
+        CompletableFuture<RawBsonDocument> future = new CompletableFuture<>();
+        CascadeBot.INS.getDatabaseManager().runAsyncTask(database -> {
+            database.getCollection(collection, RawBsonDocument.class).find(eq("_id", guildId)).first((document, throwable) -> {
+                if (throwable != null) {
+                    future.completeExceptionally(throwable);
+                } else {
+                    future.complete(document);
+                }
+            });
+        });
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<List<RawBsonDocument>> findAll(Collection<Long> guildIds) {
+        CompletableFuture<List<RawBsonDocument>> future = new CompletableFuture<>();
+        CascadeBot.INS.getDatabaseManager().runAsyncTask(database -> {
+            database.getCollection(collection, RawBsonDocument.class)
+                    .find(in("_id", guildIds))
+                    .into(new ArrayList<>(), (documents, throwable) -> {
+                        if (throwable != null) {
+                            future.completeExceptionally(throwable);
+                        } else {
+                            future.complete(documents);
+                        }
+                    });
+        });
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<BsonValue> findStateLock(long guildId) {
+        CompletableFuture<BsonValue> future = new CompletableFuture<>();
+        CascadeBot.INS.getDatabaseManager().runAsyncTask(database -> {
+            database.getCollection(collection, BsonDocument.class)
+                    .find(eq("_id", guildId))
+                    .projection(Projections.include("stateLock"))
+                    .first((document, throwable) -> {
+                        if (throwable != null) {
+                            future.completeExceptionally(throwable);
+                        } else {
+                            future.complete(document == null ? null : document.get("stateLock"));
+                        }
+                    });
+        });
+        return future;
+    }
+
+    @Override
+    public Map<Long, BsonValue> findStateLocks(Collection<Long> guildIds) {
+        Map<Long, BsonValue> locks = new HashMap<>();
+        for (BsonDocument document : getCollection().find(in("_id", guildIds)).projection(Projections.include("stateLock"))) {
+            locks.put(document.get("_id").asInt64().getValue(), document.get("stateLock"));
+        }
+        return locks;
+    }
+
+    @Override
+    public CompletableFuture<RawBsonDocument> insert(RawBsonDocument document) {
+        long guildId = document.get("_id").asInt64().getValue();
+        CompletableFuture<RawBsonDocument> future = new CompletableFuture<>();
+        CascadeBot.INS.getDatabaseManager().runAsyncTask(database -> {
+            database.getCollection(collection, RawBsonDocument.class).insertOne(document, (result, throwable) -> {
+                if (throwable == null) {
+                    CascadeBot.LOGGER.debug("Inserted Guild ID " + guildId);
+                    future.complete(document);
+                } else if (throwable instanceof MongoWriteException
+                        && ((MongoWriteException) throwable).getError().getCategory() == ErrorCategory.DUPLICATE_KEY) {
+                    // Another process inserted the guild first
+                    find(guildId).whenComplete((stored, findThrowable) -> {
+                        if (findThrowable != null) {
+                            future.completeExceptionally(findThrowable);
+                        } else if (stored == null) {
+                            future.completeExceptionally(new IllegalStateException("Guild ID " + guildId + " was removed while it was being inserted"));
+                        } else {
+                            future.complete(stored);
+                        }
+                    });
+                } else {
+                    future.completeExceptionally(throwable);
+                }
+            });
+        });
+        return future;
+    }
+
+    @Override
+    public Set<Long> write(List<GuildDataWrite> writes) {
+        List<WriteModel<BsonDocument>> models = new ArrayList<>(writes.size());
+        for (GuildDataWrite write : writes) {
+            models.add(toModel(write));
+        }
+        BulkWriteResult result = getCollection().bulkWrite(models, UNORDERED);
+        if (result.getMatchedCount() + result.getUpserts().size() == models.size()) {
+            return Set.of();
+        }
+        // At least one conditional write didn't match, so someone else has changed those guilds
+        return findConflicts(writes);
+    }
+
+    private static WriteModel<BsonDocument> toModel(GuildDataWrite write) {
+        Bson filter = eq("_id", write.getGuildId());
+        if (!write.isConditional()) {
+            return new ReplaceOneModel<>(filter, write.getDocument(), UPSERT);
+        }
+        List<BsonValue> locks = write.getExpectedStateLocks();
+        filter = and(filter, locks.size() == 1 ? eq("stateLock", locks.get(0)) : in("stateLock", locks));
+        if (write.getUpdates() != null) {
+            return new UpdateOneModel<>(filter, Updates.combine(write.getUpdates()));
+        }
+        return new ReplaceOneModel<>(filter, write.getDocument());
+    }
+
+    private Set<Long> findConflicts(List<GuildDataWrite> writes) {
+        List<Long> ids = new ArrayList<>(writes.size());
+        for (GuildDataWrite write : writes) {
+            if (write.isConditional()) ids.add(write.getGuildId());
+        }
+        Map<Long, BsonValue> locks = findStateLocks(ids);
+        Set<Long> conflicts = new HashSet<>();
+        for (GuildDataWrite write : writes) {
+            // If the stored stateLock is the one we wrote then the write was applied
+            if (write.isConditional() && !write.getStateLock().equals(locks.get(write.getGuildId()))) {
+                conflicts.add(write.getGuildId());
+            }
+        }
+        return conflicts;
+    }
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+
+    private MongoCollection<BsonDocument> getCollection() {
+        return CascadeBot.INS.getDatabaseManager().getDatabase().getCollection(collection, BsonDocument.class);
+    }
+
+}
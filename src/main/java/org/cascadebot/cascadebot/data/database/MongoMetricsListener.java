@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.data.database;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import com.mongodb.event.ConnectionAddedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolClosedEvent;
+import com.mongodb.event.ConnectionPoolListenerAdapter;
+import com.mongodb.event.ConnectionPoolOpenedEvent;
+import com.mongodb.event.ConnectionPoolWaitQueueEnteredEvent;
+import com.mongodb.event.ConnectionPoolWaitQueueExitedEvent;
+import com.mongodb.event.ConnectionRemovedEvent;
+import org.bson.BsonValue;
+import org.cascadebot.cascadebot.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the time taken by every command sent to the database and the state of the connection pools for one
+ * client, and logs commands that take longer than the slow command threshold.
+ * <p>
+ * Commands are labelled with their wire protocol name, so {@code replaceOne} and {@code updateOne} are both
+ * {@code update} and a bulk write shows up as the {@code insert}, {@code update} and {@code delete} commands it is
+ * split into.
+ */
+public class MongoMetricsListener extends ConnectionPoolListenerAdapter implements CommandListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MongoMetricsListener.class);
+
+    private final String client;
+    private final long slowThreshold;
+
+    // Request ID -> collection, as only the started event has the command in it
+    private final Map<Integer, String> collections = new ConcurrentHashMap<>();
+
+    /**
+     * @param client        The name of the client, used to label the metrics.
+     * @param slowThreshold Commands that take longer than this many milliseconds are logged, or 0 to not log them.
+     */
+    public MongoMetricsListener(String client, long slowThreshold) {
+        this.client = client;
+        this.slowThreshold = slowThreshold;
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        BsonValue target = event.getCommand().get(event.getCommandName());
+        if (target != null && target.isString()) {
+            collections.put(event.getRequestId(), target.asString().getValue());
+        } else if (event.getCommand().isString("collection")) {
+            // getMore has the cursor ID as its value
+            collections.put(event.getRequestId(), event.getCommand().getString("collection").getValue());
+        }
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        finished(event.getRequestId(), event.getCommandName(), event.getElapsedTime(TimeUnit.NANOSECONDS), event.getConnectionDescription().getServerAddress(), null);
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        finished(event.getRequestId(), event.getCommandName(), event.getElapsedTime(TimeUnit.NANOSECONDS), event.getConnectionDescription().getServerAddress(), event.getThrowable());
+    }
+
+    private void finished(int requestId, String command, long elapsed, Object server, Throwable throwable) {
+        String collection = collections.remove(requestId);
+        if (collection == null) collection = "";
+        Metrics.INS.mongoCommandDuration.labels(client, command, collection).observe(elapsed / 1e9);
+        if (throwable != null) {
+            Metrics.INS.mongoCommandFailures.labels(client, command, collection).inc();
+            String error = throwable instanceof MongoCommandException ? "error " + ((MongoCommandException) throwable).getErrorCode() : throwable.getClass().getSimpleName();
+            LOGGER.debug("Database command {} on {} failed after {}ms: {}", command, collection, TimeUnit.NANOSECONDS.toMillis(elapsed), error);
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+        if (slowThreshold > 0 && millis >= slowThreshold) {
+            LOGGER.warn("Slow database command: {} on {} took {}ms on {} ({} client)", command, collection, millis, server, client);
+        }
+    }
+
+    @Override
+    public void connectionPoolOpened(ConnectionPoolOpenedEvent event) {
+        Metrics.INS.mongoPoolMaxSize.labels(client, server(event.getServerId())).set(event.getSettings().getMaxSize());
+    }
+
+    @Override
+    public void connectionPoolClosed(ConnectionPoolClosedEvent event) {
+        String server = server(event.getServerId());
+        Metrics.INS.mongoPoolMaxSize.remove(client, server);
+        Metrics.INS.mongoPoolConnections.remove(client, server);
+        Metrics.INS.mongoPoolCheckedOut.remove(client, server);
+        Metrics.INS.mongoPoolWaitQueue.remove(client, server);
+    }
+
+    @Override
+    public void connectionAdded(ConnectionAddedEvent event) {
+        Metrics.INS.mongoPoolConnections.labels(client, server(event.getConnectionId().getServerId())).inc();
+    }
+
+    @Override
+    public void connectionRemoved(ConnectionRemovedEvent event) {
+        Metrics.INS.mongoPoolConnections.labels(client, server(event.getConnectionId().getServerId())).dec();
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        Metrics.INS.mongoPoolCheckedOut.labels(client, server(event.getConnectionId().getServerId())).inc();
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        Metrics.INS.mongoPoolCheckedOut.labels(client, server(event.getConnectionId().getServerId())).dec();
+    }
+
+    @Override
+    public void waitQueueEntered(ConnectionPoolWaitQueueEnteredEvent event) {
+        Metrics.INS.mongoPoolWaitQueue.labels(client, server(event.getServerId())).inc();
+    }
+
+    @Override
+    public void waitQueueExited(ConnectionPoolWaitQueueExitedEvent event) {
+        Metrics.INS.mongoPoolWaitQueue.labels(client, server(event.getServerId())).dec();
+    }
+
+    private static String server(ServerId serverId) {
+        return serverId.getAddress().toString();
+    }
+
+}
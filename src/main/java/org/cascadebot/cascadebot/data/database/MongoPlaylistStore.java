@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.data.database;
+
+import org.cascadebot.cascadebot.CascadeBot;
+import org.cascadebot.cascadebot.data.objects.Playlist;
+import org.cascadebot.cascadebot.data.objects.PlaylistType;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Updates.combine;
+
+/**
+ * Stores playlists in a MongoDB collection.
+ */
+public class MongoPlaylistStore implements PlaylistStore {
+
+    private final String collection;
+
+    public MongoPlaylistStore(String collection) {
+        this.collection = collection;
+    }
+
+    @Override
+    public Iterable<Playlist> getPlaylists(long ownerId, PlaylistType scope) {
+        return CascadeBot.INS.getDatabaseManager().getDatabase().getCollection(collection, Playlist.class)
+                .find(
+                        combine(
+                                eq("ownerID", ownerId),
+                                eq("scope", scope)
+                        )
+                );
+    }
+
+    @Override
+    public void insert(Playlist playlist) {
+        CascadeBot.INS.getDatabaseManager().runAsyncTask(database -> {
+            database.getCollection(collection, Playlist.class).insertOne(
+                    playlist,
+                    new DebugLogCallback<>("Inserted new playlist with ID: " + playlist.getPlaylistID())
+            );
+        });
+    }
+
+    @Override
+    public void replace(Playlist playlist) {
+        CascadeBot.INS.getDatabaseManager().runAsyncTask(database -> {
+            database.getCollection(collection, Playlist.class).replaceOne(
+                    eq("_id", playlist.getPlaylistID()),
+                    playlist,
+                    new DebugLogCallback<>("Replaced Playlist with ID: " + playlist.getPlaylistID())
+            );
+        });
+    }
+
+}
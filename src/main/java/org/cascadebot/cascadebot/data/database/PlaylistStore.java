@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.data.database;
+
+import org.cascadebot.cascadebot.data.objects.Playlist;
+import org.cascadebot.cascadebot.data.objects.PlaylistType;
+
+/**
+ * Where saved playlists are kept.
+ */
+public interface PlaylistStore {
+
+    /**
+     * Gets every playlist a user or guild owns.
+     *
+     * @param ownerId The ID of the user or guild.
+     * @param scope   Whether the owner is a user or a guild.
+     * @return The owner's playlists.
+     */
+    Iterable<Playlist> getPlaylists(long ownerId, PlaylistType scope);
+
+    /**
+     * Stores a new playlist in the background.
+     *
+     * @param playlist The playlist to store.
+     */
+    void insert(Playlist playlist);
+
+    /**
+     * Replaces a stored playlist in the background.
+     *
+     * @param playlist The new version of the playlist.
+     */
+    void replace(Playlist playlist);
+
+}
@@ -0,0 +1,20 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.data.database;
+
+public enum StorageBackend {
+
+    /**
+     * Guilds and playlists are stored in MongoDB.
+     */
+    MONGO,
+    /**
+     * Guilds and playlists are kept in memory, optionally with guilds saved to a local file. This is for testing
+     * and profiling without a database, and only works with a single bot process.
+     */
+    MEMORY
+
+}
@@ -0,0 +1,433 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.data.managers;
+
+import io.prometheus.client.Summary;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.cascadebot.cascadebot.MDCException;
+import org.cascadebot.cascadebot.data.database.GuildDataWrite;
+import org.cascadebot.cascadebot.data.objects.GuildData;
+import org.cascadebot.cascadebot.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes changed guilds to the database in the background.
+ * <p>
+ * Guilds are marked as dirty when they change and every flush interval all of the dirty guilds are written with
+ * as few bulk writes as possible. A guild that changes many times between flushes is only written once.
+ * Each write only contains the fields that changed since the guild was last written, see
+ * {@link GuildDataManager#prepareWrite(GuildData)}.
+ * <p>
+ * Only one bulk write is in flight at a time and the next flush waits at least as long as the last one took,
+ * so when the database slows down changes are coalesced into fewer, larger writes rather than piling up requests.
+ * If too many guilds are waiting, a flush is started straight away instead of waiting for the interval.
+ */
+public class GuildDataFlusher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GuildDataFlusher.class);
+
+    // Extended JSON keeps the BSON types so the documents can be parsed back exactly
+    static final JsonWriterSettings UNSAVED_JSON_SETTINGS = JsonWriterSettings.builder().outputMode(JsonMode.EXTENDED).build();
+    // Each line of the unsaved file has the guild and the stateLocks it can be restored over
+    static final String UNSAVED_GUILD = "guild";
+    static final String UNSAVED_EXPECTED_STATE_LOCKS = "expectedStateLocks";
+
+    private final long flushInterval;
+    private final int batchSize;
+    private final int maxPending;
+
+    private final Map<Long, DirtyGuild> dirty = new ConcurrentHashMap<>();
+    // Guilds taken out of dirty by the flush that is currently running, until their write has finished
+    private final Map<Long, GuildData> writing = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "Guild Flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean earlyFlushQueued = new AtomicBoolean(false);
+
+    /**
+     * @param flushInterval The minimum time between flushes in milliseconds.
+     * @param batchSize     The maximum number of guilds to write in one bulk write.
+     * @param maxPending    The number of dirty guilds that will start a flush before the interval is up.
+     */
+    public GuildDataFlusher(long flushInterval, int batchSize, int maxPending) {
+        if (flushInterval < 1 || batchSize < 1 || maxPending < 1) {
+            throw new IllegalArgumentException("The write behind settings must all be at least 1!");
+        }
+        this.flushInterval = flushInterval;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        // Once we're shutting down the final flush writes everything, so queued flushes must not run after it
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        executor.schedule(this::scheduledFlush, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Marks a guild as needing to be written to the database on the next flush.
+     *
+     * @param data The guild that has changed.
+     */
+    public void markDirty(GuildData data) {
+        long now = System.nanoTime();
+        dirty.compute(data.getGuildId(), (id, existing) -> {
+            if (existing == null) return new DirtyGuild(data, now);
+            // Keep the time it was first marked so the lag covers the whole time the change has been waiting
+            return existing.data == data ? existing : new DirtyGuild(data, existing.dirtySince);
+        });
+        int pending = dirty.size();
+        Metrics.INS.guildsDirty.set(pending);
+        if (pending >= maxPending) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * Starts a flush on the flusher thread without waiting for the flush interval.
+     */
+    public void requestFlush() {
+        if (!earlyFlushQueued.compareAndSet(false, true)) return;
+        try {
+            executor.execute(this::flush);
+        } catch (RejectedExecutionException e) {
+            // We're shutting down, the final flush will write any dirty guilds
+            earlyFlushQueued.set(false);
+        }
+    }
+
+    /**
+     * Gets the data for a guild that is waiting to be written, so a guild that is loaded again before its
+     * changes have been written doesn't lose them.
+     *
+     * @param guildId The ID of the guild.
+     * @return The data waiting to be written, or null if the guild isn't dirty.
+     */
+    public GuildData getPending(long guildId) {
+        DirtyGuild guild = dirty.get(guildId);
+        return guild == null ? writing.get(guildId) : guild.data;
+    }
+
+    public int getPendingCount() {
+        return dirty.size();
+    }
+
+    private void scheduledFlush() {
+        long start = System.nanoTime();
+        try {
+            flush();
+        } catch (Throwable e) {
+            LOGGER.error("Uncaught exception while flushing guilds!", MDCException.from(e));
+        }
+        long took = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        try {
+            executor.schedule(this::scheduledFlush, Math.max(flushInterval, took), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // We're shutting down
+        }
+    }
+
+    /**
+     * Writes every dirty guild to the database. This blocks until all of the writes have finished.
+     *
+     * @return The number of guilds that were written.
+     */
+    public int flush() {
+        earlyFlushQueued.set(false);
+        int written = 0;
+        List<DirtyGuild> batch = new ArrayList<>(batchSize);
+        for (Long id : dirty.keySet()) {
+            DirtyGuild guild = takeDirty(id);
+            if (guild == null) continue;
+            batch.add(guild);
+            if (batch.size() == batchSize) {
+                written += writeBatch(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            written += writeBatch(batch);
+        }
+        Metrics.INS.guildsDirty.set(dirty.size());
+        return written;
+    }
+
+    // Moves a guild from dirty to writing in one step, so getPending can always find it while it's being written
+    private DirtyGuild takeDirty(long id) {
+        DirtyGuild[] taken = new DirtyGuild[1];
+        dirty.computeIfPresent(id, (key, guild) -> {
+            writing.put(key, guild.data);
+            taken[0] = guild;
+            return null;
+        });
+        return taken[0];
+    }
+
+    private int writeBatch(List<DirtyGuild> batch) {
+        List<GuildDataManager.GuildWrite> prepared = new ArrayList<>(batch.size());
+        List<GuildDataWrite> writes = new ArrayList<>(batch.size());
+        Summary.Timer timer = null;
+        try {
+            for (DirtyGuild guild : batch) {
+                GuildDataManager.GuildWrite write;
+                try {
+                    write = GuildDataManager.prepareWrite(guild.data);
+                } catch (RuntimeException e) {
+                    // Most likely a command changed the guild while it was being encoded, so try again next time
+                    LOGGER.warn("Could not encode guild {}, it will be retried on the next flush", guild.data.getGuildId(), MDCException.from(e));
+                    requeue(guild);
+                    writing.remove(guild.data.getGuildId(), guild.data);
+                    continue;
+                }
+                if (write == null) {
+                    // Nothing has changed since the last write, so the database copy is already up to date
+                    writing.remove(guild.data.getGuildId(), guild.data);
+                    continue;
+                }
+                prepared.add(write);
+                writes.add(write.getWrite());
+            }
+            if (writes.isEmpty()) return 0;
+
+            timer = Metrics.INS.guildFlushDuration.startTimer();
+            Set<Long> conflicts = GuildDataManager.getStore().write(writes);
+            for (GuildDataManager.GuildWrite write : prepared) {
+                if (conflicts.contains(write.getGuildId())) {
+                    LOGGER.warn("Guild {} was changed by something else since it was loaded, dropping our copy and reloading it", write.getGuildId());
+                    Metrics.INS.guildWriteConflicts.inc();
+                    write.conflicted();
+                } else {
+                    write.succeeded();
+                }
+            }
+        } catch (RuntimeException e) {
+            // Any of these writes may have been applied, their stateLocks stay unconfirmed until the retry
+            LOGGER.error("Could not write {} guilds to the database, they will be retried on the next flush", writes.size(), e);
+            Metrics.INS.guildFlushFailures.inc(writes.size());
+            for (DirtyGuild guild : batch) {
+                requeue(guild);
+            }
+            return 0;
+        } finally {
+            if (timer != null) {
+                timer.observeDuration();
+            }
+            for (DirtyGuild guild : batch) {
+                writing.remove(guild.data.getGuildId(), guild.data);
+            }
+        }
+
+        long now = System.nanoTime();
+        for (DirtyGuild guild : batch) {
+            Metrics.INS.guildFlushLag.observe((now - guild.dirtySince) / 1e9);
+        }
+        Metrics.INS.guildFlushBatchSize.observe(writes.size());
+        LOGGER.debug("Wrote {} guilds to the database", writes.size());
+        return writes.size();
+    }
+
+    private void requeue(DirtyGuild guild) {
+        // If the guild changed again while we were writing, keep the newer data but the older time
+        dirty.merge(guild.data.getGuildId(), guild, (current, failed) -> new DirtyGuild(current.data, Math.min(current.dirtySince, failed.dirtySince)));
+    }
+
+    /**
+     * Stops the background flushes and writes every guild that is still dirty, splitting the writes between
+     * several threads. Guilds that haven't been written by the deadline, or whose write failed, are saved to
+     * {@code unsavedFile} so they can be restored with {@link GuildDataManager#restoreUnsaved(Path)}.
+     *
+     * @param deadline    How long to wait for the writes in milliseconds, including any flush already running.
+     * @param threads     The number of bulk writes to run at once.
+     * @param unsavedFile The file to append unsaved guilds to.
+     * @return The outcome of the final flush.
+     */
+    public ShutdownResult shutdown(long deadline, int threads, Path unsavedFile) {
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadline);
+        // This cancels any flush that is queued but hasn't started
+        executor.shutdown();
+        boolean flushFinished = false;
+        try {
+            // Let a flush that's already running finish so we don't write the same guilds twice at once
+            flushFinished = executor.awaitTermination(deadline, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Map<Long, GuildData> remaining = new HashMap<>();
+        if (!flushFinished) {
+            // Whatever happens to the running flush's writes, these guilds are written again or saved to the file
+            remaining.putAll(writing);
+            LOGGER.warn("A flush of {} guilds was still running at shutdown, they will be written again", remaining.size());
+        }
+        for (Long id : dirty.keySet()) {
+            DirtyGuild guild = dirty.remove(id);
+            if (guild != null) remaining.put(id, guild.data);
+        }
+
+        List<GuildDataManager.GuildWrite> writes = new ArrayList<>();
+        int unchanged = 0;
+        int lost = 0;
+        for (GuildData data : remaining.values()) {
+            GuildDataManager.GuildWrite write;
+            try {
+                write = GuildDataManager.prepareWrite(data);
+            } catch (RuntimeException e) {
+                LOGGER.error("Could not encode guild {} while shutting down, its latest changes have been lost!", data.getGuildId(), MDCException.from(e));
+                lost++;
+                continue;
+            }
+            if (write == null) {
+                unchanged++;
+            } else {
+                writes.add(write);
+            }
+        }
+        Metrics.INS.guildsDirty.set(0);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "Guild Shutdown Flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<List<GuildDataManager.GuildWrite>> batches = new ArrayList<>();
+        List<CompletableFuture<Set<Long>>> futures = new ArrayList<>();
+        for (int i = 0; i < writes.size(); i += batchSize) {
+            List<GuildDataManager.GuildWrite> batch = writes.subList(i, Math.min(i + batchSize, writes.size()));
+            batches.add(batch);
+            futures.add(CompletableFuture.supplyAsync(() -> writeFinal(batch), pool));
+        }
+
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .get(Math.max(0, end - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.warn("Hit the {}ms deadline while writing guilds", deadline);
+        } catch (ExecutionException e) {
+            // Failed batches are picked up below
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pool.shutdownNow();
+
+        int saved = 0;
+        List<GuildDataManager.GuildWrite> unsaved = new ArrayList<>();
+        for (int i = 0; i < batches.size(); i++) {
+            CompletableFuture<Set<Long>> future = futures.get(i);
+            if (future.isDone() && !future.isCompletedExceptionally()) {
+                saved += batches.get(i).size();
+                Set<Long> conflicts = future.join();
+                // Keeps the local snapshots up to date for the next start
+                for (GuildDataManager.GuildWrite write : batches.get(i)) {
+                    if (conflicts.contains(write.getGuildId())) {
+                        write.conflicted();
+                    } else {
+                        write.succeeded();
+                    }
+                }
+            } else {
+                unsaved.addAll(batches.get(i));
+            }
+        }
+        Metrics.INS.guildFlushFailures.inc(unsaved.size() + lost);
+
+        boolean savedToFile = unsaved.isEmpty() || writeUnsaved(unsaved, unsavedFile);
+        return new ShutdownResult(saved, unsaved.size() + lost, unchanged, savedToFile && lost == 0);
+    }
+
+    private Set<Long> writeFinal(List<GuildDataManager.GuildWrite> batch) {
+        List<GuildDataWrite> writes = new ArrayList<>(batch.size());
+        for (GuildDataManager.GuildWrite write : batch) {
+            writes.add(write.getWrite());
+        }
+        try {
+            Set<Long> conflicts = GuildDataManager.getStore().write(writes);
+            if (!conflicts.isEmpty()) {
+                LOGGER.warn("{} guilds were changed by something else while shutting down and weren't overwritten", conflicts.size());
+            }
+            return conflicts;
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not write {} guilds to the database while shutting down", batch.size(), e);
+            throw e;
+        }
+    }
+
+    private boolean writeUnsaved(List<GuildDataManager.GuildWrite> unsaved, Path file) {
+        // Appended so that guilds from an earlier shutdown that haven't been restored yet aren't lost
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (GuildDataManager.GuildWrite write : unsaved) {
+                BsonArray locks = new BsonArray(write.getWrite().getExpectedStateLocks());
+                if (!locks.isEmpty()) {
+                    // The failed write may have been applied after all
+                    locks.add(write.getWrite().getStateLock());
+                }
+                BsonDocument line = new BsonDocument(UNSAVED_EXPECTED_STATE_LOCKS, locks).append(UNSAVED_GUILD, write.getState());
+                writer.write(line.toJson(UNSAVED_JSON_SETTINGS));
+                writer.newLine();
+            }
+            LOGGER.warn("Saved {} guilds that couldn't be written to the database to {}", unsaved.size(), file.toAbsolutePath());
+            return true;
+        } catch (IOException e) {
+            LOGGER.error("Could not save {} guilds to {}, their latest changes have been lost!", unsaved.size(), file.toAbsolutePath(), e);
+            return false;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class ShutdownResult {
+
+        // Guilds written to the database
+        private final int saved;
+        // Guilds that couldn't be written to the database in time
+        private final int failed;
+        // Guilds that hadn't changed since they were last written
+        private final int unchanged;
+        // Whether the failed guilds were saved to the unsaved file
+        private final boolean savedToFile;
+
+    }
+
+    private static class DirtyGuild {
+
+        private final GuildData data;
+        private final long dirtySince;
+
+        private DirtyGuild(GuildData data, long dirtySince) {
+            this.data = data;
+            this.dirtySince = dirtySince;
+        }
+
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.data.managers;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.conversions.Bson;
+import org.cascadebot.cascadebot.CascadeBot;
+import org.cascadebot.cascadebot.MDCException;
+import org.cascadebot.cascadebot.data.objects.GuildData;
+import org.cascadebot.cascadebot.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.mongodb.client.model.Filters.in;
+
+/**
+ * Drops guilds from the cache when they are changed in the database by another bot process or the panel.
+ * <p>
+ * Changes are picked up from a change stream on the guilds collection. Change streams need a replica set, so if
+ * the database doesn't support them the cached guilds' stateLocks are polled instead. A change is ignored if its
+ * stateLock is one we wrote ourselves.
+ */
+public class GuildDataInvalidator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GuildDataInvalidator.class);
+
+    // Returned by the server when change streams aren't supported because it isn't a replica set
+    private static final int CHANGE_STREAM_NOT_SUPPORTED = 40573;
+    private static final long CHANGE_STREAM_RETRY_DELAY = 5000;
+    private static final int POLL_BATCH_SIZE = 500;
+
+    private final String collection;
+    private final Mode mode;
+    private final long pollInterval;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Guild Invalidator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param collection   The collection guilds are stored in.
+     * @param mode         How to find out about changes.
+     * @param pollInterval The time between polls in milliseconds, when polling.
+     */
+    public GuildDataInvalidator(String collection, Mode mode, long pollInterval) {
+        this.collection = collection;
+        this.mode = mode;
+        this.pollInterval = pollInterval;
+    }
+
+    public void start() {
+        if (!GuildDataManager.getStore().isShared()) {
+            LOGGER.info("Guilds aren't stored anywhere other processes can change them, not checking for changes");
+            return;
+        }
+        switch (mode) {
+            case CHANGE_STREAM:
+                watch();
+                break;
+            case POLL:
+                startPolling();
+                break;
+            case NONE:
+                break;
+        }
+    }
+
+    private void watch() {
+        List<Bson> pipeline = List.of(
+                Aggregates.match(in("operationType", "insert", "update", "replace", "delete")),
+                // The whole document is sent for inserts and replaces, but we only need the stateLock
+                Aggregates.project(Projections.include("operationType", "documentKey", "fullDocument.stateLock", "updateDescription.updatedFields.stateLock"))
+        );
+        CascadeBot.INS.getDatabaseManager().runAsyncTask(database -> {
+            database.getCollection(collection).watch(pipeline, BsonDocument.class).forEach(this::handleChange, (result, throwable) -> {
+                if (throwable instanceof MongoCommandException && ((MongoCommandException) throwable).getErrorCode() == CHANGE_STREAM_NOT_SUPPORTED) {
+                    LOGGER.warn("The database doesn't support change streams, falling back to polling for guild changes every {}ms", pollInterval);
+                    startPolling();
+                    return;
+                }
+                LOGGER.warn("The guild change stream stopped, restarting it in {}ms", CHANGE_STREAM_RETRY_DELAY, throwable == null ? null : MDCException.from(throwable));
+                // Changes made while the stream was down would be missed, so check everything once before restarting
+                scheduler.schedule(() -> {
+                    try {
+                        poll();
+                    } catch (Throwable e) {
+                        LOGGER.error("Could not poll for guild changes", MDCException.from(e));
+                    }
+                    watch();
+                }, CHANGE_STREAM_RETRY_DELAY, TimeUnit.MILLISECONDS);
+            });
+        });
+        LOGGER.info("Watching the {} collection for guild changes", collection);
+    }
+
+    private void handleChange(ChangeStreamDocument<BsonDocument> change) {
+        BsonValue id = change.getDocumentKey() == null ? null : change.getDocumentKey().get("_id");
+        if (id == null || !id.isInt64()) return;
+        GuildData data = GuildDataManager.getLoadedGuildData(id.asInt64().getValue());
+        if (data == null) return;
+
+        BsonValue lock = null;
+        if (change.getOperationType() == OperationType.UPDATE && change.getUpdateDescription() != null) {
+            lock = change.getUpdateDescription().getUpdatedFields().get("stateLock");
+        } else if (change.getFullDocument() != null) {
+            lock = change.getFullDocument().get("stateLock");
+        }
+        // A delete, or a write that didn't change the stateLock, can't have come from us
+        if (lock == null || !GuildDataManager.isOwnState(data, lock)) {
+            invalidate(data, "change_stream");
+        }
+    }
+
+    private void startPolling() {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                poll();
+            } catch (Throwable e) {
+                LOGGER.error("Could not poll for guild changes", MDCException.from(e));
+            }
+        }, pollInterval, pollInterval, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll() {
+        List<GuildData> cached = new ArrayList<>(GuildDataManager.getGuilds().asMap().values());
+        for (int i = 0; i < cached.size(); i += POLL_BATCH_SIZE) {
+            Map<Long, GuildData> batch = new HashMap<>();
+            for (GuildData data : cached.subList(i, Math.min(i + POLL_BATCH_SIZE, cached.size()))) {
+                batch.put(data.getGuildId(), data);
+            }
+            Map<Long, BsonValue> locks = GuildDataManager.getStore().findStateLocks(batch.keySet());
+            for (GuildData data : batch.values()) {
+                BsonValue lock = locks.get(data.getGuildId());
+                // Guilds that haven't been inserted yet won't be in the database
+                if (lock != null && !GuildDataManager.isOwnState(data, lock)) {
+                    invalidate(data, "poll");
+                }
+            }
+        }
+    }
+
+    private void invalidate(GuildData data, String source) {
+        LOGGER.debug("Guild {} was changed by something else, dropping it from the cache", data.getGuildId());
+        Metrics.INS.guildInvalidations.labels(source).inc();
+        GuildDataManager.invalidate(data.getGuildId());
+    }
+
+    public enum Mode {
+
+        /**
+         * Use a change stream, falling back to polling if the database doesn't support them.
+         */
+        CHANGE_STREAM,
+        /**
+         * Poll the stateLocks of all the cached guilds.
+         */
+        POLL,
+        /**
+         * Don't check for changes. Only use this if this is the only process that writes guilds.
+         */
+        NONE
+
+    }
+
+}
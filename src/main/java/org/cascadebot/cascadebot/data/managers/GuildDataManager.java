@@ -5,70 +5,538 @@
 
 package org.cascadebot.cascadebot.data.managers;
 
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.mongodb.client.model.Updates;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import org.bson.BsonDocument;
+import org.bson.BsonInvalidOperationException;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.Codec;
 import org.bson.conversions.Bson;
+import org.bson.json.JsonParseException;
 import org.cascadebot.cascadebot.CascadeBot;
-import org.cascadebot.cascadebot.data.database.DebugLogCallback;
+import org.cascadebot.cascadebot.data.Config;
+import org.cascadebot.cascadebot.data.database.BsonDiff;
+import org.cascadebot.cascadebot.data.database.DatabaseManager;
+import org.cascadebot.cascadebot.data.database.GuildDataStore;
+import org.cascadebot.cascadebot.data.database.GuildDataWrite;
+import org.cascadebot.cascadebot.data.database.GuildSnapshotStore;
 import org.cascadebot.cascadebot.data.objects.GuildData;
 import org.cascadebot.cascadebot.events.GuildSaveListener;
+import org.cascadebot.cascadebot.metrics.Metrics;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
-
-import static com.mongodb.client.model.Filters.eq;
+import java.util.stream.Collectors;
 
 public final class GuildDataManager {
 
-    private static final String COLLECTION = "guilds";
+    public static final String COLLECTION = "guilds";
+    // This changes every time the guild is encoded so is only written when something else has changed
+    private static final Set<String> UNTRACKED_FIELDS = Set.of("stateLock");
+
+    private static final GuildDataFlusher FLUSHER = new GuildDataFlusher(Config.INS.getGuildFlushInterval(),
+            Config.INS.getGuildFlushBatchSize(), Config.INS.getGuildFlushMaxPending());
+
+    private static final GuildDataPrewarmer PREWARMER = Config.INS.isPrewarmEnabled() ? new GuildDataPrewarmer(
+            Config.INS.getPrewarmBatchSize(), Config.INS.getPrewarmConcurrency(), Config.INS.getPrewarmBatchesPerSecond()) : null;
+
+    private static final GuildDataInvalidator INVALIDATOR = new GuildDataInvalidator(COLLECTION,
+            Config.INS.getCacheInvalidationMode(), TimeUnit.SECONDS.toMillis(Config.INS.getCacheInvalidationPollInterval()));
+
+    private static final GuildSnapshotStore SNAPSHOTS = openSnapshots();
 
-    private static LoadingCache<Long, GuildData> guilds = Caffeine.newBuilder()
-            .expireAfterAccess(5, TimeUnit.MINUTES)
+    private static AsyncLoadingCache<Long, GuildData> guilds = Caffeine.newBuilder()
+            .maximumWeight(Config.INS.getGuildCacheMaxWeight())
+            .weigher(new GuildDataWeigher())
+            .expireAfterAccess(Config.INS.getGuildCacheExpiry(), TimeUnit.MINUTES)
+            // Guilds are changed in place, so this doesn't reload them, it only weighs them again
+            .refreshAfterWrite(Config.INS.getGuildCacheReweighInterval(), TimeUnit.SECONDS)
             .removalListener(new GuildSaveListener())
             .recordStats()
-            .build(id -> {
-                GuildData dbData = CascadeBot.INS.getDatabaseManager().getDatabase().getCollection(COLLECTION, GuildData.class).find(eq("_id", id)).first();
-                if (dbData == null) {
-                    CascadeBot.LOGGER.debug("Attempted to load guild data for ID: " + id + ", none was found so creating new data object");
-                    GuildData data = new GuildData(id);
-                    GuildDataManager.insert(id, data);
-                    return data;
+            .buildAsync(new AsyncCacheLoader<>() {
+                @Override
+                public CompletableFuture<GuildData> asyncLoad(Long id, Executor executor) {
+                    return load(id, executor);
                 }
 
-                CascadeBot.LOGGER.debug("Loaded data from database for guild ID: " + id);
-                return dbData;
+                @Override
+                public CompletableFuture<GuildData> asyncReload(Long id, GuildData data, Executor executor) {
+                    // Other processes' changes are picked up by the invalidator, and reloading would lose anything
+                    // changed on the old copy since it was last written
+                    return CompletableFuture.completedFuture(data);
+                }
             });
 
+    private static CompletableFuture<GuildData> load(long id, Executor executor) {
+        // If the guild was evicted with changes that haven't been written yet, the database copy is out of date
+        GuildData pending = FLUSHER.getPending(id);
+        if (pending != null) {
+            CascadeBot.LOGGER.debug("Loaded data waiting to be written for guild ID: " + id);
+            return CompletableFuture.completedFuture(pending);
+        }
 
-    public static void update(long id, Bson update) {
-        CascadeBot.INS.getDatabaseManager().runAsyncTask(database -> {
-            database.getCollection(COLLECTION, GuildData.class).updateOne(eq("_id", id), update, new DebugLogCallback<>("Updated Guild ID " + id + ":", update));
-        });
+        if (SNAPSHOTS != null) {
+            RawBsonDocument snapshot = SNAPSHOTS.get(id);
+            if (snapshot != null) {
+                // Waiting for the stateLock would cost a database round trip on every load, so the snapshot is used
+                // straight away and checked afterwards. If it turns out to be out of date the guild is dropped and
+                // loaded again, the same as when the invalidator sees another process change it.
+                Metrics.INS.guildSnapshotLoads.labels("hit").inc();
+                CascadeBot.LOGGER.debug("Loaded data from the local snapshot for guild ID: " + id);
+                return CompletableFuture.supplyAsync(() -> decode(snapshot), executor).whenComplete((data, throwable) -> {
+                    if (data != null) checkSnapshot(data);
+                });
+            }
+            Metrics.INS.guildSnapshotLoads.labels("miss").inc();
+        }
+
+        return loadFromStore(id, executor);
     }
 
-    public static void insert(long id, GuildData data) {
-        CascadeBot.INS.getDatabaseManager().runAsyncTask(database -> {
-            database.getCollection(COLLECTION, GuildData.class).insertOne(data, new DebugLogCallback<>("Inserted Guild ID " + id));
+    private static void checkSnapshot(GuildData data) {
+        long id = data.getGuildId();
+        getStore().findStateLock(id).whenComplete((lock, throwable) -> {
+            if (throwable != null) {
+                CascadeBot.LOGGER.warn("Could not check the snapshot for guild ID: " + id, throwable);
+                return;
+            }
+            // Our own writes since the snapshot was loaded also change the stateLock, so those don't count
+            if (lock == null || !isOwnState(data, lock)) {
+                CascadeBot.LOGGER.debug("The snapshot for guild ID: " + id + " was out of date");
+                Metrics.INS.guildSnapshotLoads.labels("stale").inc();
+                invalidate(id);
+            }
         });
     }
 
-    public static void replace(long id, GuildData data) {
-        CascadeBot.INS.getDatabaseManager().runAsyncTask(database -> {
-            database.getCollection(COLLECTION, GuildData.class).replaceOne(eq("_id", id), data, new DebugLogCallback<>("Replaced Guild ID " + id));
-        });
+    private static CompletableFuture<GuildData> loadFromStore(long id, Executor executor) {
+        // Decode on the cache's executor rather than tying up the driver's threads
+        return getStore().find(id).thenComposeAsync(document -> {
+            if (document == null) {
+                CascadeBot.LOGGER.debug("Attempted to load guild data for ID: " + id + ", none was found so creating new data object");
+                return create(id, executor);
+            }
+
+            GuildData dbData = decodeLoaded(document);
+            CascadeBot.LOGGER.debug("Loaded data from database for guild ID: " + id);
+            return CompletableFuture.completedFuture(dbData);
+        }, executor);
+    }
+
+    private static CompletableFuture<GuildData> create(long id, Executor executor) {
+        GuildData data = new GuildData(id);
+        RawBsonDocument state = new RawBsonDocument(data, getCodec());
+        return getStore().insert(state).handleAsync((stored, throwable) -> {
+            if (throwable != null) {
+                // The first flush replaces the whole guild, which stores it anyway
+                CascadeBot.LOGGER.warn("Could not store the new data for guild ID: " + id, throwable);
+                return data;
+            }
+            if (stored != state) {
+                // Another process stored the guild first, so use their copy
+                return decodeLoaded(stored);
+            }
+            data.setPersistedState(state);
+            saveSnapshot(id, state);
+            return data;
+        }, executor);
+    }
+
+    private static GuildSnapshotStore openSnapshots() {
+        if (!Config.INS.isGuildSnapshotsEnabled()) return null;
+        try {
+            return new GuildSnapshotStore(Paths.get(Config.INS.getGuildSnapshotsFile()), Config.INS.getGuildSnapshotsMaxSize());
+        } catch (IOException e) {
+            CascadeBot.LOGGER.error("Could not open the guild snapshot file, guilds will only be loaded from the database", e);
+            return null;
+        }
+    }
+
+    /**
+     * Finds the guilds whose local snapshots are still up to date, checking them all with one read of their
+     * stateLocks. Snapshots that are out of date are removed. This blocks until the stateLocks have been read.
+     *
+     * @param ids The IDs of the guilds.
+     * @return The up to date snapshots by guild ID.
+     */
+    static Map<Long, RawBsonDocument> findFreshSnapshots(List<Long> ids) {
+        if (SNAPSHOTS == null) return Map.of();
+        Map<Long, RawBsonDocument> snapshots = new HashMap<>();
+        for (long id : ids) {
+            RawBsonDocument snapshot = SNAPSHOTS.get(id);
+            if (snapshot != null) snapshots.put(id, snapshot);
+        }
+        Metrics.INS.guildSnapshotLoads.labels("miss").inc(ids.size() - snapshots.size());
+        if (snapshots.isEmpty()) return snapshots;
+
+        Map<Long, BsonValue> locks = getStore().findStateLocks(snapshots.keySet());
+        Iterator<Map.Entry<Long, RawBsonDocument>> iterator = snapshots.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, RawBsonDocument> entry = iterator.next();
+            if (!entry.getValue().get("stateLock").equals(locks.get(entry.getKey()))) {
+                Metrics.INS.guildSnapshotLoads.labels("stale").inc();
+                SNAPSHOTS.remove(entry.getKey());
+                iterator.remove();
+            }
+        }
+        Metrics.INS.guildSnapshotLoads.labels("hit").inc(snapshots.size());
+        return snapshots;
     }
 
-    public static void replaceSync(long id, GuildData data) {
-        CascadeBot.INS.getDatabaseManager().runTask(database -> {
-            database.getCollection(COLLECTION, GuildData.class).replaceOne(eq("_id", id), data);
+    /**
+     * Works out the write needed to bring the database copy of a guild up to date.
+     * <p>
+     * If the guild has been read from or written to the database before, this is an update with only the fields
+     * that have changed since then. Otherwise it is a replace of the whole document.
+     * <p>
+     * Writes to an existing document only apply if its stateLock is still the one we last saw, so a change made by
+     * another bot process or the panel in the meantime isn't overwritten. If an earlier write failed it may or may
+     * not have been applied, so the next write is a whole replace that accepts either stateLock.
+     * <p>
+     * The whole guild is still encoded every time to find what changed, so an update only saves on what is sent to
+     * the database. Encoding and comparing cost as much CPU as before, growing with the size of the guild rather
+     * than the size of the change.
+     *
+     * @param data The guild to write.
+     * @return The write, or null if nothing has changed.
+     */
+    static GuildWrite prepareWrite(GuildData data) {
+        RawBsonDocument persisted = data.getPersistedState();
+        Set<BsonValue> unconfirmed = data.getUnconfirmedStateLocks();
+        RawBsonDocument state = new RawBsonDocument(data, getCodec());
+        long id = data.getGuildId();
+        if (persisted == null) {
+            Metrics.INS.guildWrites.labels("replace").inc();
+            return new GuildWrite(data, GuildDataWrite.replace(id, state));
+        }
+
+        BsonValue lock = persisted.get("stateLock");
+        if (!unconfirmed.isEmpty()) {
+            List<BsonValue> locks = new ArrayList<>(unconfirmed);
+            locks.add(lock);
+            Metrics.INS.guildWrites.labels("replace").inc();
+            return new GuildWrite(data, GuildDataWrite.conditionalReplace(id, state, locks));
+        }
+
+        List<Bson> changes = BsonDiff.diff(persisted, state, UNTRACKED_FIELDS);
+        if (changes.isEmpty()) {
+            Metrics.INS.guildWrites.labels("unchanged").inc();
+            return null;
+        }
+        changes.add(Updates.set("stateLock", state.get("stateLock")));
+        Metrics.INS.guildWrites.labels("update").inc();
+        return new GuildWrite(data, GuildDataWrite.update(id, state, changes, lock));
+    }
+
+    /**
+     * Checks whether a stateLock seen in the database came from this process.
+     *
+     * @param data The cached guild.
+     * @param lock The stateLock in the database.
+     * @return Whether the lock is the one we last wrote or read, or one we may have written.
+     */
+    static boolean isOwnState(GuildData data, BsonValue lock) {
+        RawBsonDocument persisted = data.getPersistedState();
+        if (persisted == null) {
+            // We couldn't store this guild when it was created, so the only writes to it are our own replaces
+            return true;
+        }
+        return lock.equals(persisted.get("stateLock")) || data.getUnconfirmedStateLocks().contains(lock) || data.isRecentStateLock(lock);
+    }
+
+    /**
+     * Removes a guild from the cache because the database has a newer version of it. It is loaded again the next
+     * time it is used.
+     *
+     * @param id The ID of the guild.
+     */
+    public static void invalidate(long id) {
+        if (SNAPSHOTS != null) {
+            SNAPSHOTS.remove(id);
+        }
+        guilds.synchronous().invalidate(id);
+    }
+
+    static GuildData decode(RawBsonDocument document) {
+        GuildData data = document.decode(getCodec());
+        data.setPersistedState(document);
+        Metrics.INS.guildWeight.observe(GuildDataWeigher.estimateSize(document));
+        return data;
+    }
+
+    /**
+     * Decodes a guild that has just been read from the database, updating its local snapshot.
+     *
+     * @param document The guild's document.
+     * @return The decoded guild.
+     */
+    static GuildData decodeLoaded(RawBsonDocument document) {
+        GuildData data = decode(document);
+        saveSnapshot(data.getGuildId(), document);
+        return data;
+    }
+
+    static void saveSnapshot(long id, RawBsonDocument document) {
+        if (SNAPSHOTS != null) {
+            SNAPSHOTS.put(id, document);
+        }
+    }
+
+    /**
+     * Adds a guild to the cache unless it is already cached or loading. If the guild was evicted with changes that
+     * haven't been written yet, those are cached instead, as the given copy is out of date.
+     *
+     * @param data The guild to add.
+     * @return Whether the given guild was added.
+     */
+    static boolean putIfAbsent(GuildData data) {
+        boolean[] added = new boolean[1];
+        guilds.synchronous().asMap().computeIfAbsent(data.getGuildId(), id -> {
+            GuildData pending = FLUSHER.getPending(id);
+            if (pending != null) return pending;
+            added[0] = true;
+            return data;
         });
+        return added[0];
+    }
+
+    /**
+     * Loads all of a shard's guilds that aren't already cached, in batches. This does nothing unless
+     * prewarming is enabled in the config.
+     *
+     * @param jda The shard to load the guilds for.
+     */
+    public static void prewarm(JDA jda) {
+        if (PREWARMER == null) return;
+        List<Long> ids = jda.getGuildCache().stream()
+                .map(Guild::getIdLong)
+                .filter(id -> guilds.getIfPresent(id) == null)
+                .collect(Collectors.toList());
+        PREWARMER.prewarm(jda.getShardInfo().getShardId(), ids);
     }
 
+    private static Codec<GuildData> getCodec() {
+        return DatabaseManager.getCodecRegistry().get(GuildData.class);
+    }
+
+    static GuildDataStore getStore() {
+        return CascadeBot.INS.getGuildDataStore();
+    }
+
+    /**
+     * Writes a guild to the database on the flusher thread as soon as possible.
+     *
+     * @param data The guild to save.
+     */
+    public static void save(GuildData data) {
+        FLUSHER.markDirty(data);
+        FLUSHER.requestFlush();
+    }
+
+    /**
+     * Marks a guild as changed so it is written to the database on the next flush.
+     *
+     * @param data The guild that has changed.
+     */
+    public static void markDirty(GuildData data) {
+        FLUSHER.markDirty(data);
+    }
+
+    /**
+     * Writes every guild in the cache to the database and stops the background flushes.
+     * This is only for when the bot is shutting down.
+     *
+     * @return How many guilds were written and how many couldn't be.
+     */
+    public static GuildDataFlusher.ShutdownResult flushAll() {
+        guilds.synchronous().asMap().values().forEach(FLUSHER::markDirty);
+        GuildDataFlusher.ShutdownResult result = FLUSHER.shutdown(TimeUnit.SECONDS.toMillis(Config.INS.getShutdownFlushDeadline()),
+                Config.INS.getShutdownFlushThreads(), Paths.get(Config.INS.getUnsavedGuildsFile()));
+        if (SNAPSHOTS != null) {
+            SNAPSHOTS.close();
+        }
+        getStore().close();
+        return result;
+    }
+
+    /**
+     * Writes any guilds that couldn't be written to the database during the last shutdown. The file is renamed
+     * afterwards so it isn't restored again.
+     * <p>
+     * A guild is only restored if it hasn't been changed somewhere else since, for example on the panel. Guilds
+     * that have are logged and left in the renamed file.
+     *
+     * @param file The file the unsaved guilds were written to.
+     */
+    public static void restoreUnsaved(Path file) {
+        if (!Files.exists(file)) return;
+        // If a guild was saved more than once the later line is newer
+        Map<Long, GuildDataWrite> writes = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                GuildDataWrite write = parseUnsaved(BsonDocument.parse(line));
+                writes.remove(write.getGuildId());
+                writes.put(write.getGuildId(), write);
+            }
+        } catch (IOException | BsonInvalidOperationException | JsonParseException e) {
+            CascadeBot.LOGGER.error("Could not read the unsaved guilds from " + file.toAbsolutePath(), e);
+            return;
+        }
+
+        Set<Long> conflicts = Set.of();
+        if (!writes.isEmpty()) {
+            try {
+                conflicts = getStore().write(new ArrayList<>(writes.values()));
+            } catch (RuntimeException e) {
+                CascadeBot.LOGGER.error("Could not restore the unsaved guilds from " + file.toAbsolutePath() + ", they will be retried on the next start", e);
+                return;
+            }
+        }
+        Path restored = file.resolveSibling(file.getFileName() + ".restored-" + System.currentTimeMillis());
+        try {
+            Files.move(file, restored);
+        } catch (IOException e) {
+            CascadeBot.LOGGER.error("Restored the unsaved guilds but could not rename " + file.toAbsolutePath() + ", delete it so they aren't restored again!", e);
+        }
+        for (long id : conflicts) {
+            CascadeBot.LOGGER.warn("Did not restore the unsaved data for guild ID: {} as it has been changed since, it is kept in {}", id, restored.toAbsolutePath());
+        }
+        CascadeBot.LOGGER.info("Restored {} guilds that couldn't be saved during the last shutdown", writes.size() - conflicts.size());
+    }
+
+    private static GuildDataWrite parseUnsaved(BsonDocument line) {
+        if (!line.containsKey(GuildDataFlusher.UNSAVED_GUILD)) {
+            // Older files only have the guild, with nothing to check it against
+            RawBsonDocument document = new RawBsonDocument(line, new BsonDocumentCodec());
+            return GuildDataWrite.replace(line.getInt64("_id").getValue(), document);
+        }
+        BsonDocument guild = line.getDocument(GuildDataFlusher.UNSAVED_GUILD);
+        RawBsonDocument document = new RawBsonDocument(guild, new BsonDocumentCodec());
+        long id = guild.getInt64("_id").getValue();
+        List<BsonValue> locks = line.getArray(GuildDataFlusher.UNSAVED_EXPECTED_STATE_LOCKS).getValues();
+        // Guilds that had never been stored have no locks to check
+        return locks.isEmpty() ? GuildDataWrite.replace(id, document) : GuildDataWrite.conditionalReplace(id, document, locks);
+    }
+
+    /**
+     * Starts watching for guilds being changed by other processes so they can be dropped from the cache.
+     */
+    public static void startInvalidation() {
+        INVALIDATOR.start();
+    }
+
+    public static GuildDataFlusher getFlusher() {
+        return FLUSHER;
+    }
+
+    static final class GuildWrite {
+
+        private final GuildData data;
+        private final GuildDataWrite write;
+
+        private GuildWrite(GuildData data, GuildDataWrite write) {
+            this.data = data;
+            this.write = write;
+            // Until we know whether this write was applied, a change event with this lock could be our own
+            data.getUnconfirmedStateLocks().add(write.getStateLock());
+        }
+
+        GuildDataWrite getWrite() {
+            return write;
+        }
+
+        RawBsonDocument getState() {
+            return write.getDocument();
+        }
+
+        long getGuildId() {
+            return data.getGuildId();
+        }
+
+        /**
+         * Records that the write succeeded so the next write only includes changes made after this one.
+         */
+        void succeeded() {
+            data.setPersistedState(write.getDocument());
+            saveSnapshot(data.getGuildId(), write.getDocument());
+            data.confirmStateLocks();
+        }
+
+        /**
+         * Records that the write wasn't applied because the guild was changed somewhere else. Our copy is
+         * out of date so it's dropped from the cache and the latest version is loaded the next time it is used.
+         */
+        void conflicted() {
+            data.getUnconfirmedStateLocks().clear();
+            invalidate(data.getGuildId());
+        }
+
+    }
+
+    /**
+     * Gets the data for a guild, waiting for it to be loaded from the database if it isn't cached.
+     * Event listeners that can carry on later should use {@link #getGuildDataAsync(long)} instead.
+     *
+     * @param id The ID of the guild.
+     * @return The guild's data.
+     */
     public static GuildData getGuildData(long id) {
+        return guilds.synchronous().get(id);
+    }
+
+    /**
+     * Gets the data for a guild without blocking. If the guild is cached the future is already complete.
+     *
+     * @param id The ID of the guild.
+     * @return A future that completes with the guild's data once it has been loaded.
+     */
+    public static CompletableFuture<GuildData> getGuildDataAsync(long id) {
         return guilds.get(id);
     }
 
+    /**
+     * Gets the data for a guild only if it has already been loaded. This never blocks or starts a load.
+     *
+     * @param id The ID of the guild.
+     * @return The guild's data, or null if it isn't cached or is still loading.
+     */
+    public static GuildData getLoadedGuildData(long id) {
+        // The synchronous view would wait for a load that is still running
+        CompletableFuture<GuildData> future = guilds.getIfPresent(id);
+        if (future == null || !future.isDone() || future.isCompletedExceptionally()) {
+            return null;
+        }
+        return future.join();
+    }
+
+    /**
+     * @return A view of the guilds that have finished loading.
+     */
     public static LoadingCache<Long, GuildData> getGuilds() {
-        return guilds;
+        return guilds.synchronous();
     }
 
 }
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.data.managers;
+
+import org.bson.RawBsonDocument;
+import org.cascadebot.cascadebot.MDCException;
+import org.cascadebot.cascadebot.data.objects.GuildData;
+import org.cascadebot.cascadebot.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the data for a shard's guilds into the cache in batches when the shard becomes ready, so that the first
+ * message in each guild doesn't have to wait for its own database read. Guilds with a local snapshot only have their
+ * stateLocks read, all of a batch's at once, and are served from the snapshot if it is still up to date.
+ * <p>
+ * Batches from every shard share one queue. At most {@code concurrency} batches are read at once and new batches
+ * are started at most {@code batchesPerSecond} times a second, so a full restart doesn't flood the database.
+ */
+public class GuildDataPrewarmer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GuildDataPrewarmer.class);
+
+    private final int batchSize;
+    private final long batchInterval;
+    private final Semaphore inFlight;
+
+    private final Queue<Batch> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean ticking = new AtomicBoolean(false);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Guild Prewarmer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Reads the snapshots' stateLocks and decodes the guilds, one thread for each batch that can be in flight
+    private final ExecutorService workers;
+
+    /**
+     * @param batchSize        The number of guilds to read in each query.
+     * @param concurrency      The maximum number of queries to run at once.
+     * @param batchesPerSecond The maximum number of queries to start each second.
+     */
+    public GuildDataPrewarmer(int batchSize, int concurrency, double batchesPerSecond) {
+        if (batchSize < 1 || concurrency < 1 || batchesPerSecond <= 0) {
+            throw new IllegalArgumentException("The prewarm settings must all be positive!");
+        }
+        this.batchSize = batchSize;
+        this.batchInterval = Math.max(1, Math.round(1000 / batchesPerSecond));
+        this.inFlight = new Semaphore(concurrency);
+        this.workers = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "Guild Prewarm Worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a shard's guilds to be loaded.
+     *
+     * @param shardId  The ID of the shard, for logging and metrics.
+     * @param guildIds The guilds to load. Guilds that aren't in the database are skipped.
+     * @return A future that completes with the number of guilds loaded once every batch has finished.
+     */
+    public CompletableFuture<Integer> prewarm(int shardId, List<Long> guildIds) {
+        ShardPrewarm shard = new ShardPrewarm(shardId, guildIds.size(), (guildIds.size() + batchSize - 1) / batchSize);
+        if (guildIds.isEmpty()) {
+            shard.future.complete(0);
+            return shard.future;
+        }
+        LOGGER.info("Prewarming {} guilds for shard {} in {} batches", guildIds.size(), shardId, shard.batches);
+        for (int i = 0; i < guildIds.size(); i += batchSize) {
+            queue.add(new Batch(shard, new ArrayList<>(guildIds.subList(i, Math.min(i + batchSize, guildIds.size())))));
+        }
+        if (ticking.compareAndSet(false, true)) {
+            scheduler.execute(this::tick);
+        }
+        return shard.future;
+    }
+
+    private void tick() {
+        if (inFlight.tryAcquire()) {
+            Batch batch = queue.poll();
+            if (batch != null) {
+                load(batch);
+            } else {
+                inFlight.release();
+            }
+        }
+        if (queue.isEmpty()) {
+            ticking.set(false);
+            // A batch could have been queued after we checked but before ticking was cleared
+            if (queue.isEmpty() || !ticking.compareAndSet(false, true)) return;
+        }
+        scheduler.schedule(this::tick, batchInterval, TimeUnit.MILLISECONDS);
+    }
+
+    private void load(Batch batch) {
+        CompletableFuture.supplyAsync(() -> loadSnapshots(batch), workers)
+                .thenCompose(remaining -> remaining.isEmpty()
+                        ? CompletableFuture.completedFuture(List.<RawBsonDocument>of())
+                        : GuildDataManager.getStore().findAll(remaining))
+                // Decode off the store's threads
+                .whenCompleteAsync((documents, throwable) -> {
+                    if (throwable != null) {
+                        finish(batch, throwable);
+                    } else {
+                        store(batch, documents);
+                    }
+                }, workers);
+    }
+
+    /**
+     * Caches the guilds in the batch that have an up to date local snapshot.
+     *
+     * @return The guilds that still need to be read from the database.
+     */
+    private List<Long> loadSnapshots(Batch batch) {
+        Map<Long, RawBsonDocument> snapshots = GuildDataManager.findFreshSnapshots(batch.guildIds);
+        if (snapshots.isEmpty()) return batch.guildIds;
+        List<Long> remaining = new ArrayList<>(batch.guildIds.size() - snapshots.size());
+        for (long id : batch.guildIds) {
+            RawBsonDocument snapshot = snapshots.get(id);
+            if (snapshot == null) {
+                remaining.add(id);
+            } else if (GuildDataManager.putIfAbsent(GuildDataManager.decode(snapshot))) {
+                batch.loaded++;
+            }
+        }
+        return remaining;
+    }
+
+    private void store(Batch batch, List<RawBsonDocument> documents) {
+        try {
+            for (RawBsonDocument document : documents) {
+                // Only update the snapshot if this copy was used, it could be older than one waiting to be written
+                GuildData data = GuildDataManager.decode(document);
+                if (GuildDataManager.putIfAbsent(data)) {
+                    GuildDataManager.saveSnapshot(data.getGuildId(), document);
+                    batch.loaded++;
+                }
+            }
+            finish(batch, null);
+        } catch (RuntimeException e) {
+            finish(batch, e);
+        }
+    }
+
+    private void finish(Batch batch, Throwable throwable) {
+        int loaded = batch.loaded;
+        inFlight.release();
+        ShardPrewarm shard = batch.shard;
+        if (throwable != null) {
+            LOGGER.warn("Could not prewarm a batch of {} guilds for shard {}, they will be loaded when they are first used", batch.guildIds.size(), shard.shardId, MDCException.from(throwable));
+        }
+        int total = shard.loaded.addAndGet(loaded);
+        int done = shard.batchesDone.incrementAndGet();
+        Metrics.INS.guildsPrewarmed.inc(loaded);
+        LOGGER.debug("Prewarmed batch {}/{} for shard {}", done, shard.batches, shard.shardId);
+        if (done == shard.batches) {
+            double seconds = (System.nanoTime() - shard.startTime) / 1e9;
+            Metrics.INS.guildPrewarmDuration.labels(String.valueOf(shard.shardId)).set(seconds);
+            LOGGER.info("Prewarmed {}/{} guilds for shard {} in {}s", total, shard.guildCount, shard.shardId, String.format("%.2f", seconds));
+            shard.future.complete(total);
+        }
+    }
+
+    private static class ShardPrewarm {
+
+        private final int shardId;
+        private final int guildCount;
+        private final int batches;
+        private final long startTime = System.nanoTime();
+        private final AtomicInteger loaded = new AtomicInteger();
+        private final AtomicInteger batchesDone = new AtomicInteger();
+        private final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        private ShardPrewarm(int shardId, int guildCount, int batches) {
+            this.shardId = shardId;
+            this.guildCount = guildCount;
+            this.batches = batches;
+        }
+
+    }
+
+    private static class Batch {
+
+        private final ShardPrewarm shard;
+        private final List<Long> guildIds;
+        // Only changed by one stage of the batch's load at a time
+        private int loaded;
+
+        private Batch(ShardPrewarm shard, List<Long> guildIds) {
+            this.shard = shard;
+            this.guildIds = guildIds;
+        }
+
+    }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.data.managers;
+
+import com.github.benmanes.caffeine.cache.Weigher;
+import org.bson.RawBsonDocument;
+import org.cascadebot.cascadebot.data.objects.GuildData;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Estimates how many bytes of heap a guild's data holds on to, so the guild cache can be bounded by memory rather
+ * than by the number of guilds.
+ * <p>
+ * The estimate is worked out from the size of the guild as it was last read from or written to the database, so
+ * nothing has to walk the guild's collections while commands may be changing them. This means a guild's weight
+ * only catches up with its changes once they have been flushed and the cache weighs it again. The numbers are
+ * rough, they don't need to be exact as long as big guilds weigh more than small ones.
+ */
+public class GuildDataWeigher implements Weigher<Long, GuildData> {
+
+    // The guild itself, its settings containers, the button and page caches and the trigger index
+    private static final long BASE_SIZE = 4096;
+    // The decoded objects take up a few times as much as their encoded form, on top of the encoded copy we keep
+    private static final long BYTES_PER_ENCODED_BYTE = 4;
+
+    @Override
+    public int weigh(@Nonnull Long guildId, @Nonnull GuildData data) {
+        return estimateSize(data.getPersistedState());
+    }
+
+    /**
+     * Estimates the heap used by a guild from its encoded form.
+     *
+     * @param persisted The guild as it is in the database, or null if it has never been stored.
+     * @return The estimated size in bytes.
+     */
+    static int estimateSize(RawBsonDocument persisted) {
+        long size = BASE_SIZE;
+        if (persisted != null) {
+            size += persisted.getByteBuffer().remaining() * BYTES_PER_ENCODED_BYTE;
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+}
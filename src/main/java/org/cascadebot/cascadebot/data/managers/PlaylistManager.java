@@ -5,27 +5,14 @@
 
 package org.cascadebot.cascadebot.data.managers;
 
-import com.mongodb.client.MongoIterable;
 import org.cascadebot.cascadebot.CascadeBot;
-import org.cascadebot.cascadebot.data.database.DebugLogCallback;
 import org.cascadebot.cascadebot.data.objects.Playlist;
 import org.cascadebot.cascadebot.data.objects.PlaylistType;
 
-import static com.mongodb.client.model.Filters.eq;
-import static com.mongodb.client.model.Updates.combine;
-
 public final class PlaylistManager {
 
-    private static final String COLLECTION = "playlists";
-
-    public static MongoIterable<Playlist> getPlaylists(long ownerID, PlaylistType scope) {
-        return CascadeBot.INS.getDatabaseManager().getDatabase().getCollection(COLLECTION, Playlist.class)
-                .find(
-                        combine(
-                                eq("ownerID", ownerID),
-                                eq("scope", scope)
-                        )
-                );
+    public static Iterable<Playlist> getPlaylists(long ownerID, PlaylistType scope) {
+        return CascadeBot.INS.getPlaylistStore().getPlaylists(ownerID, scope);
     }
 
     public static Playlist getPlaylistByName(long ownerID, PlaylistType scope, String name) {
@@ -38,22 +25,11 @@ public final class PlaylistManager {
     }
 
     public static void savePlaylist(Playlist playlist) {
-        CascadeBot.INS.getDatabaseManager().runAsyncTask(database -> {
-            database.getCollection(COLLECTION, Playlist.class).insertOne(
-                    playlist,
-                    new DebugLogCallback<>("Inserted new playlist with ID: " + playlist.getPlaylistID())
-            );
-        });
+        CascadeBot.INS.getPlaylistStore().insert(playlist);
     }
 
     public static void replacePlaylist(Playlist playlist) {
-        CascadeBot.INS.getDatabaseManager().runAsyncTask(database -> {
-            database.getCollection(COLLECTION, Playlist.class).replaceOne(
-                    eq("_id", playlist.getPlaylistID()),
-                    playlist,
-                    new DebugLogCallback<>("Replaced Playlist with ID: " + playlist.getPlaylistID())
-            );
-        });
+        CascadeBot.INS.getPlaylistStore().replace(playlist);
     }
 
 }
@@ -12,14 +12,19 @@ import de.bild.codec.annotations.Transient;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.MessageChannel;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
 import org.bson.codecs.pojo.annotations.BsonDiscriminator;
 import org.bson.codecs.pojo.annotations.BsonIgnore;
 import org.cascadebot.cascadebot.CascadeBot;
+import org.cascadebot.cascadebot.commandmeta.CommandTriggerIndex;
 import org.cascadebot.cascadebot.commandmeta.ICommandMain;
 import org.cascadebot.cascadebot.commandmeta.Module;
 import org.cascadebot.cascadebot.data.language.Locale;
+import org.cascadebot.cascadebot.data.managers.GuildDataManager;
 import org.cascadebot.cascadebot.utils.buttons.ButtonGroup;
 import org.cascadebot.cascadebot.utils.buttons.ButtonsCache;
 import org.cascadebot.cascadebot.utils.pagination.PageCache;
@@ -27,16 +32,20 @@ import org.cascadebot.cascadebot.utils.pagination.PageCache;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Getter
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 @BsonDiscriminator
 public class GuildData {
 
+    private static final int RECENT_STATE_LOCKS = 16;
+
     @Id
     private long guildId;
 
@@ -72,6 +81,33 @@ public class GuildData {
 
     @Transient
     private PageCache pageCache = new PageCache();
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    private AtomicInteger commandInfoVersion = new AtomicInteger();
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    private volatile CommandTriggerIndex triggerIndex;
+
+    // The document as it was last written to or read from the database, used to work out what has changed
+    @Transient
+    @Setter
+    private volatile RawBsonDocument persistedState;
+
+    // The stateLocks of writes that may have been applied but haven't been confirmed yet
+    @Transient
+    private Set<BsonValue> unconfirmedStateLocks = ConcurrentHashMap.newKeySet();
+
+    // The stateLocks of our last few confirmed writes, as their change events can arrive after a later write
+    @Transient
+    @Getter(AccessLevel.NONE)
+    private Set<BsonValue> recentStateLocks = Collections.synchronizedSet(Collections.newSetFromMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<BsonValue, Boolean> eldest) {
+            return size() > RECENT_STATE_LOCKS;
+        }
+    }));
     //endregion
 
     @PreSave
@@ -86,8 +122,9 @@ public class GuildData {
     //region Commands
     public void enableCommand(ICommandMain command) {
         if (command.getModule().isPrivate()) return;
-        if (commandInfo.contains(command.getClass()) || !command.getModule().isDefault()) {
+        if (commandInfo.containsKey(command.getClass()) || !command.getModule().isDefault()) {
             getGuildCommandInfo(command).setEnabled(true);
+            markDirty();
         }
     }
 
@@ -101,6 +138,7 @@ public class GuildData {
     public void disableCommand(ICommandMain command) {
         if (command.getModule().isPrivate()) return;
         getGuildCommandInfo(command).setEnabled(false);
+        markDirty();
     }
 
     public void disableCommandByModule(Module module) {
@@ -111,14 +149,14 @@ public class GuildData {
     }
 
     public boolean isCommandEnabled(ICommandMain command) {
-        if (commandInfo.contains(command.getClass())) {
+        if (commandInfo.containsKey(command.getClass())) {
             return commandInfo.get(command.getClass()).isEnabled();
         }
         return command.getModule().isDefault();
     }
 
     public String getCommandName(ICommandMain command) {
-        if (commandInfo.contains(command.getClass())) {
+        if (commandInfo.containsKey(command.getClass())) {
             return commandInfo.get(command.getClass()).getCommand();
         }
         return command.command(locale);
@@ -126,26 +164,58 @@ public class GuildData {
 
     public void setCommandName(ICommandMain command, String commandName) {
         getGuildCommandInfo(command).setCommand(commandName);
+        invalidateTriggerIndex();
+        markDirty();
     }
 
     public Set<String> getCommandAliases(ICommandMain command) {
-        if (commandInfo.contains(command.getClass())) {
+        if (commandInfo.containsKey(command.getClass())) {
             return commandInfo.get(command.getClass()).getAliases();
         }
         return command.getGlobalAliases(locale);
     }
 
     public boolean addAlias(ICommandMain command, String alias) {
-        return getGuildCommandInfo(command).addAlias(alias);
+        boolean added = getGuildCommandInfo(command).addAlias(alias);
+        invalidateTriggerIndex();
+        if (added) markDirty();
+        return added;
     }
 
     public boolean removeAlias(ICommandMain command, String alias) {
-        return getGuildCommandInfo(command).removeAlias(alias);
+        boolean removed = getGuildCommandInfo(command).removeAlias(alias);
+        invalidateTriggerIndex();
+        if (removed) markDirty();
+        return removed;
     }
 
     @BsonIgnore
     private GuildCommandInfo getGuildCommandInfo(ICommandMain command) {
-        return commandInfo.computeIfAbsent(command.getClass(), aClass -> new GuildCommandInfo(command, locale));
+        return commandInfo.computeIfAbsent(command.getClass(), aClass -> {
+            invalidateTriggerIndex();
+            return new GuildCommandInfo(command, locale);
+        });
+    }
+
+    /**
+     * Gets the trigger lookup for this guild, rebuilding it if the command info or locale has changed since it was last built.
+     *
+     * @return The current trigger index for this guild.
+     */
+    @BsonIgnore
+    public CommandTriggerIndex getTriggerIndex() {
+        int version = commandInfoVersion.get();
+        CommandTriggerIndex index = triggerIndex;
+        if (index == null || !index.isValidFor(locale, version)) {
+            // If the command info changes while this is building, the version won't match and the next lookup rebuilds it
+            index = CascadeBot.INS.getCommandManager().buildTriggerIndex(this, version);
+            triggerIndex = index;
+        }
+        return index;
+    }
+
+    private void invalidateTriggerIndex() {
+        commandInfoVersion.incrementAndGet();
     }
 
     public Map<Class<? extends ICommandMain>, GuildCommandInfo> getCommandInfo() {
@@ -154,18 +224,48 @@ public class GuildData {
 
     //endregion
 
+    public void setLocale(Locale locale) {
+        this.locale = locale;
+        invalidateTriggerIndex();
+        markDirty();
+    }
+
     public boolean enableFlag(Flag flag) {
-        return this.enabledFlags.add(flag);
+        boolean added = this.enabledFlags.add(flag);
+        if (added) markDirty();
+        return added;
     }
 
     public boolean disableFlag(Flag flag) {
-        return this.enabledFlags.remove(flag);
+        boolean removed = this.enabledFlags.remove(flag);
+        if (removed) markDirty();
+        return removed;
     }
 
     public boolean isFlagEnabled(Flag flag) {
         return this.enabledFlags.contains(flag);
     }
 
+    /**
+     * Queues this guild to be written to the database. This should be called after changing anything that is saved.
+     */
+    public void markDirty() {
+        GuildDataManager.markDirty(this);
+    }
+
+    /**
+     * Records that the writes waiting to be confirmed have finished. Their stateLocks are remembered for a while
+     * so that their change events are still recognised as our own.
+     */
+    public void confirmStateLocks() {
+        recentStateLocks.addAll(unconfirmedStateLocks);
+        unconfirmedStateLocks.clear();
+    }
+
+    public boolean isRecentStateLock(BsonValue lock) {
+        return recentStateLocks.contains(lock);
+    }
+
     public void addButtonGroup(MessageChannel channel, Message message, ButtonGroup group) {
         group.setMessage(message.getIdLong());
         buttonsCache.put(channel.getIdLong(), message.getIdLong(), group);
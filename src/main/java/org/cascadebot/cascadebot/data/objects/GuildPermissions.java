@@ -5,40 +5,60 @@
 
 package org.cascadebot.cascadebot.data.objects;
 
+import de.bild.codec.annotations.Transient;
 import lombok.Getter;
-import lombok.Setter;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.GuildChannel;
 import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
 import net.dv8tion.jda.internal.utils.Checks;
 import org.cascadebot.cascadebot.CascadeBot;
 import org.cascadebot.cascadebot.Environment;
 import org.cascadebot.cascadebot.permissions.CascadePermission;
+import org.cascadebot.cascadebot.permissions.PermissionCache;
 import org.cascadebot.cascadebot.permissions.Security;
 import org.cascadebot.cascadebot.permissions.objects.Group;
 import org.cascadebot.cascadebot.permissions.objects.PermissionAction;
+import org.cascadebot.cascadebot.permissions.objects.PermissionHolder;
 import org.cascadebot.cascadebot.permissions.objects.Result;
 import org.cascadebot.cascadebot.permissions.objects.User;
 import org.cascadebot.shared.SecurityLevel;
 import spark.utils.CollectionUtils;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 public class GuildPermissions {
 
     @Getter
-    @Setter
     private PermissionMode mode = PermissionMode.MOST_RESTRICTIVE;
 
     private List<Group> groups = Collections.synchronizedList(new ArrayList<>());
     private Map<Long, User> users = new ConcurrentHashMap<>();
 
+    @Transient
+    private PermissionCache cache = new PermissionCache();
+
+    // Bumped whenever the groups, or which roles and users they apply to, change
+    @Transient
+    private AtomicLong version = new AtomicLong();
+
+    @Transient
+    private volatile GroupIndex groupIndex;
+
+    // Whether the groups and users loaded from the database have been told to report when they change
+    @Transient
+    private volatile boolean listening;
+
     public boolean hasPermission(Member member, CascadePermission permission, GuildSettingsCore settings) {
         return hasPermission(member, null, permission, settings);
     }
@@ -70,7 +90,20 @@ public class GuildPermissions {
             return Result.of(PermissionAction.ALLOW, Result.ResultCause.GUILD);
         }
 
-        User user = users.computeIfAbsent(member.getIdLong(), id -> new User());
+        Result result = getCache().get(member, permission, perm -> evaluateHolders(member, perm));
+
+        // Discord permissions will only allow a permission if is not already allowed or denied.
+        // It will not override Cascade permissions!
+        if (result.isNeutral() && hasDiscordPermissions(member, channel, permission.getDiscordPerms())) {
+            result = Result.of(PermissionAction.ALLOW, Result.ResultCause.DISCORD, permission.getDiscordPerms());
+        }
+
+        return result;
+    }
+
+    // Evaluates the permission against the member's user and groups, which is all that is cached
+    private Result evaluateHolders(Member member, CascadePermission permission) {
+        User user = getUser(member.getIdLong());
         // Get all user groups that are directly assigned and the groups assigned through roles
         List<Group> userGroups = getUserGroups(member);
 
@@ -86,14 +119,56 @@ public class GuildPermissions {
         if (!evaluatedResult.isNeutral()) {
             result = evaluatedResult;
         }
+        return result;
+    }
 
-        // Discord permissions will only allow a permission if is not already allowed or denied.
-        // It will not override Cascade permissions!
-        if (result.isNeutral() && hasDiscordPermissions(member, channel, permission.getDiscordPerms())) {
-            result = Result.of(PermissionAction.ALLOW, Result.ResultCause.DISCORD, permission.getDiscordPerms());
+    private PermissionCache getCache() {
+        startListening();
+        return cache;
+    }
+
+    private void startListening() {
+        if (!listening) {
+            synchronized (this) {
+                if (!listening) {
+                    groups.forEach(this::listen);
+                    users.values().forEach(this::listen);
+                    listening = true;
+                }
+            }
         }
+    }
 
-        return result;
+    private <T extends PermissionHolder> T listen(T holder) {
+        holder.setChangeListener(this::changed);
+        return holder;
+    }
+
+    private void changed() {
+        version.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    /**
+     * Drops every cached permission result, for when something outside of the groups and users changes who has
+     * which permissions.
+     */
+    public void invalidateCache() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Drops the cached permission results for a member.
+     *
+     * @param memberId The ID of the member.
+     */
+    public void invalidateCache(long memberId) {
+        cache.invalidate(memberId);
+    }
+
+    public void setMode(PermissionMode mode) {
+        this.mode = mode;
+        changed();
     }
 
     private boolean hasDiscordPermissions(Member member, GuildChannel channel, Set<Permission> permissions) {
@@ -158,12 +233,17 @@ public class GuildPermissions {
                 throw new IllegalStateException("Could not create a group with a unique ID!");
             }
         } while (ids.contains(group.getId()));
-        groups.add(group);
+        groups.add(listen(group));
+        changed();
         return group;
     }
 
     public boolean deleteGroup(String id) {
-        return groups.removeIf(group -> group.getId().equals(id));
+        boolean deleted = groups.removeIf(group -> group.getId().equals(id));
+        if (deleted) {
+            changed();
+        }
+        return deleted;
     }
 
     public List<Group> getGroupsByName(String name) {
@@ -187,28 +267,123 @@ public class GuildPermissions {
     }
 
     public User getPermissionUser(Member member) {
-        return users.computeIfAbsent(member.getIdLong(), id -> new User());
+        return getUser(member.getIdLong());
+    }
+
+    private User getUser(long id) {
+        return users.computeIfAbsent(id, key -> listen(new User()));
     }
 
+    /**
+     * Gets the groups that apply to a member, either because they have been added to the member's user or because
+     * the member has a role linked to them.
+     *
+     * @param member The member to get the groups for.
+     * @return The groups added to the member's user, then the groups from their roles, each in the order they are in
+     * the guild and with each group only once.
+     */
     public List<Group> getUserGroups(Member member) {
-        User user = users.computeIfAbsent(member.getIdLong(), id -> new User());
-        List<Group> userGroups = groups.stream().filter(group -> user.getGroupIds().contains(group.getId())).collect(Collectors.toList());
-
-        // Now I know this is a mess... If you can figure out a better method hit me up 👀
-        // This adds all the groups which have a id representing a role the member has.
-        groups.stream()
-                .filter(group -> group.getRoleIds().stream().anyMatch(id -> member.getRoles().contains(member.getGuild().getRoleById(id))))
-                .forEach(userGroups::add);
+        GroupIndex index = getGroupIndex();
+        BitSet direct = new BitSet(index.groups.size());
+        int[] userPositions = index.userGroups.get(member.getIdLong());
+        if (userPositions != null) {
+            for (int position : userPositions) {
+                direct.set(position);
+            }
+        }
+        BitSet fromRoles = new BitSet(index.groups.size());
+        for (Role role : member.getRoles()) {
+            int[] rolePositions = index.roleGroups.get(role.getIdLong());
+            if (rolePositions == null) continue;
+            for (int position : rolePositions) {
+                fromRoles.set(position);
+            }
+        }
+        fromRoles.andNot(direct);
+
+        List<Group> userGroups = new ArrayList<>(direct.cardinality() + fromRoles.cardinality());
+        addGroups(index, direct, userGroups);
+        addGroups(index, fromRoles, userGroups);
         return userGroups;
     }
 
+    private static void addGroups(GroupIndex index, BitSet positions, List<Group> groups) {
+        for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+            groups.add(index.groups.get(i));
+        }
+    }
+
+    private GroupIndex getGroupIndex() {
+        startListening();
+        // Read the version first, so if anything changes while building the index it will be built again next time
+        long version = this.version.get();
+        GroupIndex index = groupIndex;
+        if (index == null || index.version != version) {
+            index = new GroupIndex(version, getGroups(), users);
+            groupIndex = index;
+        }
+        return index;
+    }
+
     public List<Group> getGroups() {
         return List.copyOf(groups);
     }
 
+    public Collection<User> getUsers() {
+        return Collections.unmodifiableCollection(users.values());
+    }
+
     public void moveGroup(Group group, int position) throws IndexOutOfBoundsException {
-        groups.remove(group);
-        groups.add(position, group);
+        try {
+            groups.remove(group);
+            groups.add(position, group);
+        } finally {
+            changed();
+        }
+    }
+
+    // Which groups apply to each role and user, as positions in the list of groups
+    private static class GroupIndex {
+
+        private final long version;
+        private final List<Group> groups;
+        private final Map<Long, int[]> roleGroups = new HashMap<>();
+        private final Map<Long, int[]> userGroups = new HashMap<>();
+
+        private GroupIndex(long version, List<Group> groups, Map<Long, User> users) {
+            this.version = version;
+            this.groups = groups;
+
+            Map<String, Integer> positions = new HashMap<>();
+            Map<Long, List<Integer>> roles = new HashMap<>();
+            for (int i = 0; i < groups.size(); i++) {
+                Group group = groups.get(i);
+                positions.putIfAbsent(group.getId(), i);
+                for (long roleId : group.getRoleIds()) {
+                    roles.computeIfAbsent(roleId, id -> new ArrayList<>()).add(i);
+                }
+            }
+            roles.forEach((roleId, groupPositions) -> roleGroups.put(roleId, toArray(groupPositions)));
+
+            for (Map.Entry<Long, User> entry : users.entrySet()) {
+                List<Integer> groupPositions = new ArrayList<>();
+                for (String groupId : entry.getValue().getGroupIds()) {
+                    // Users can still have the IDs of deleted groups
+                    Integer position = positions.get(groupId);
+                    if (position != null) {
+                        groupPositions.add(position);
+                    }
+                }
+                if (!groupPositions.isEmpty()) {
+                    userGroups.put(entry.getKey(), toArray(groupPositions));
+                }
+            }
+        }
+
+        private static int[] toArray(List<Integer> list) {
+            return list.stream().mapToInt(Integer::intValue).toArray();
+        }
+
     }
 
     public enum PermissionMode {
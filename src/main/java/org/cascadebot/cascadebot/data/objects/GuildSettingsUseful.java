@@ -2,6 +2,7 @@ package org.cascadebot.cascadebot.data.objects;
 
 import org.cascadebot.cascadebot.commandmeta.Module;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -11,6 +12,10 @@ public class GuildSettingsUseful {
     private Map<String, TodoList> todoLists = new ConcurrentHashMap<>();
 
     //region todo list stuff
+    public Map<String, TodoList> getTodoLists() {
+        return Collections.unmodifiableMap(todoLists);
+    }
+
     public TodoList getTodoList(String name) {
         return todoLists.get(name);
     }
@@ -45,6 +45,7 @@ public class TodoList {
     private long ownerId;
 
     //List of users id who are able to access this list
+    @Getter
     private List<Long> users = new ArrayList<>();
 
     @Transient
@@ -142,6 +143,7 @@ public class TodoList {
         Messaging.sendButtonedMessage(channel, getTodoListMessage(), buttonGroup).thenAccept(message -> {
             messageId = message.getIdLong();
             this.channelId = message.getChannel().getIdLong();
+            context.getData().markDirty();
         });
     }
 
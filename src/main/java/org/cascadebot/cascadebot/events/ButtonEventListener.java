@@ -28,13 +28,18 @@ public class ButtonEventListener extends ListenerAdapter {
         }
         if (e.getChannel().getType().equals(ChannelType.TEXT)) {
             TextChannel channel = (TextChannel) e.getChannel();
-            GuildData data = GuildDataManager.getGuildData(channel.getGuild().getIdLong());
+            GuildData data = GuildDataManager.getLoadedGuildData(channel.getGuild().getIdLong());
+            // Buttons only exist while the guild is cached so there's no need to load it
+            if (data == null) return;
             ButtonsCache cache = data.getButtonsCache();
             if (cache.containsKey(channel.getIdLong())) {
                 if (cache.get(channel.getIdLong()).containsKey(e.getMessageIdLong())) {
                     ButtonGroup group = cache.get(channel.getIdLong()).get(e.getMessageIdLong());
                     Metrics.INS.buttonsPressed.labels(e.getReaction().getReactionEmote().getName()).inc();
-                    e.getChannel().retrieveMessageById(e.getMessageId()).queue(message -> group.handleButton(e.getMember(), channel, message, e.getReactionEmote()));
+                    e.getChannel().retrieveMessageById(e.getMessageId()).queue(message -> {
+                        group.handleButton(e.getMember(), channel, message, e.getReactionEmote());
+                        data.markDirty();
+                    });
                     e.getReaction().removeReaction(e.getMember().getUser()).queue(); //Idk if we want to allow other reactions on the message
                     //TODO perms checking
                 }
@@ -46,7 +51,8 @@ public class ButtonEventListener extends ListenerAdapter {
     public void onMessageDelete(MessageDeleteEvent e) {
         if (e.getChannel().getType().equals(ChannelType.TEXT)) {
             TextChannel channel = (TextChannel) e.getChannel();
-            GuildData data = GuildDataManager.getGuildData(channel.getGuild().getIdLong());
+            GuildData data = GuildDataManager.getLoadedGuildData(channel.getGuild().getIdLong());
+            if (data == null) return;
             ButtonsCache cache = data.getButtonsCache();
             if (cache.containsKey(channel.getIdLong())) {
                 cache.get(channel.getIdLong()).remove(e.getMessageIdLong());
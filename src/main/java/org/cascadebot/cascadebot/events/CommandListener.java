@@ -5,6 +5,7 @@
 
 package org.cascadebot.cascadebot.events;
 
+import io.prometheus.client.Counter;
 import io.prometheus.client.Summary;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.Permission;
@@ -12,41 +13,62 @@ import net.dv8tion.jda.api.entities.MessageType;
 import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import net.dv8tion.jda.api.requests.ErrorResponse;
-import org.apache.commons.lang3.ArrayUtils;
 import org.cascadebot.cascadebot.CascadeBot;
 import org.cascadebot.cascadebot.Environment;
 import org.cascadebot.cascadebot.MDCException;
+import org.cascadebot.cascadebot.commandmeta.CommandArgs;
 import org.cascadebot.cascadebot.commandmeta.CommandContext;
+import org.cascadebot.cascadebot.commandmeta.CommandExecutor;
+import org.cascadebot.cascadebot.commandmeta.CommandRateLimiter;
 import org.cascadebot.cascadebot.commandmeta.ICommandExecutable;
 import org.cascadebot.cascadebot.commandmeta.ICommandMain;
 import org.cascadebot.cascadebot.commandmeta.ICommandRestricted;
+import org.cascadebot.cascadebot.commandmeta.RateLimitScope;
 import org.cascadebot.cascadebot.data.Config;
 import org.cascadebot.cascadebot.data.language.Language;
+import org.cascadebot.cascadebot.data.language.Locale;
 import org.cascadebot.cascadebot.data.managers.GuildDataManager;
 import org.cascadebot.cascadebot.data.objects.GuildData;
 import org.cascadebot.cascadebot.data.objects.Tag;
 import org.cascadebot.cascadebot.messaging.Messaging;
 import org.cascadebot.cascadebot.messaging.MessagingObjects;
+import org.cascadebot.cascadebot.metrics.CommandTrace;
 import org.cascadebot.cascadebot.metrics.Metrics;
 import org.cascadebot.cascadebot.utils.DiscordUtils;
 import org.cascadebot.cascadebot.utils.FormatUtils;
-import org.cascadebot.shared.Regex;
-import org.cascadebot.shared.utils.ThreadPoolExecutorLogged;
 import org.slf4j.MDC;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Pattern;
+import java.util.concurrent.Executors;
 
 public class CommandListener extends ListenerAdapter {
 
-    private static final ThreadGroup COMMAND_THREADS = new ThreadGroup("Command Threads");
-    private static final AtomicInteger threadCounter = new AtomicInteger(0);
-    private static final ExecutorService COMMAND_POOL = ThreadPoolExecutorLogged.newCachedThreadPool(r -> new Thread(COMMAND_THREADS, r, "Command Pool-" + threadCounter.incrementAndGet()), CascadeBot.LOGGER);
+    private static final CommandExecutor COMMAND_POOL = Config.INS.getCommandExecutionMode().createExecutor(Config.INS);
+    private static final CommandRateLimiter RATE_LIMITER = CommandRateLimiter.fromConfig(Config.INS);
 
-    private static final Pattern MULTIQUOTE_REGEX = Pattern.compile("[\"'](?=[\"'])");
+    private static final Counter.Child ACCEPTED_MESSAGES = Metrics.INS.messagesFiltered.labels("accepted");
+    private static final Counter.Child REJECTED_MESSAGES = Metrics.INS.messagesFiltered.labels("rejected");
+
+    // <Locale, Default prefix + localised prefix command>
+    private static final Map<Locale, String> DEFAULT_PREFIX_COMMANDS = new ConcurrentHashMap<>();
+
+    // Messages waiting for their guild's data to load, per guild in the order they arrived
+    private static final Map<Long, Queue<WaitingMessage>> WAITING_MESSAGES = new ConcurrentHashMap<>();
+    // Loads complete on the cache's or the database driver's threads, which shouldn't be held up handling the messages
+    private static final ExecutorService WAITING_EXECUTOR = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "Waiting Message Handler");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     @Override
     public void onGuildMessageReceived(GuildMessageReceivedEvent event) {
@@ -54,55 +76,140 @@ public class CommandListener extends ListenerAdapter {
             return;
         }
 
-        MDC.put("cascade.guild", event.getGuild().toString());
-        MDC.put("cascade.sender", event.getAuthor().toString());
-        MDC.put("cascade.shard_info", event.getJDA().getShardInfo().getShardString());
-        MDC.put("cascade.channel", event.getChannel().toString());
+        long guildId = event.getGuild().getIdLong();
+        // Almost every message isn't a command, so when the guild is already loaded they're thrown away here before anything is queued
+        GuildData loaded = GuildDataManager.getLoadedGuildData(guildId);
+        if (loaded != null && !isPossibleCommand(event.getMessage().getContentRaw(), loaded)) {
+            REJECTED_MESSAGES.inc();
+            return;
+        }
 
-        String message = Regex.MULTISPACE_REGEX.matcher(event.getMessage().getContentRaw()).replaceAll(" ");
-        message = MULTIQUOTE_REGEX.matcher(message).replaceAll("");
+        // If the guild isn't cached this carries on once it has loaded, rather than blocking the event thread on the database
+        WaitingMessage message = new WaitingMessage(event, GuildDataManager.getGuildDataAsync(guildId), System.nanoTime());
+        boolean[] firstWaiting = new boolean[1];
+        Queue<WaitingMessage> waiting = WAITING_MESSAGES.compute(guildId, (id, queue) -> {
+            if (queue == null) {
+                // Nothing is waiting for this guild, so if its data is ready the message can be handled straight away
+                if (message.data.isDone()) return null;
+                queue = new ArrayDeque<>();
+                firstWaiting[0] = true;
+            }
+            queue.add(message);
+            return queue;
+        });
+        if (waiting == null) {
+            handleWaitingMessage(message);
+        } else if (firstWaiting[0]) {
+            // Later messages join the queue, so they are only handled once the ones before them have been
+            message.data.whenCompleteAsync((guildData, throwable) -> handleWaitingMessages(guildId), WAITING_EXECUTOR);
+        }
+    }
+
+    private void handleWaitingMessages(long guildId) {
+        while (true) {
+            WaitingMessage[] next = new WaitingMessage[1];
+            WAITING_MESSAGES.computeIfPresent(guildId, (id, queue) -> {
+                next[0] = queue.peek();
+                return queue;
+            });
+            if (next[0] == null) return;
+            if (!next[0].data.isDone()) {
+                // The guild was dropped from the cache and is being loaded again
+                next[0].data.whenCompleteAsync((guildData, throwable) -> handleWaitingMessages(guildId), WAITING_EXECUTOR);
+                return;
+            }
+            handleWaitingMessage(next[0]);
 
+            // The message stays at the head of the queue until it has been handled, so newer messages can't skip it
+            boolean[] more = new boolean[1];
+            WAITING_MESSAGES.computeIfPresent(guildId, (id, queue) -> {
+                queue.poll();
+                more[0] = !queue.isEmpty();
+                return more[0] ? queue : null;
+            });
+            if (!more[0]) return;
+        }
+    }
+
+    private void handleWaitingMessage(WaitingMessage message) {
+        GuildMessageReceivedEvent event = message.event;
         GuildData guildData;
         try {
-            guildData = GuildDataManager.getGuildData(event.getGuild().getIdLong());
-            if (guildData == null) {
-                // This should *hopefully* never happen but just in case :D
-                throw new IllegalStateException(String.format("Guild data for guild ID: %s is null!", event.getGuild().getId()));
-            }
-        } catch (Exception e) {
-            Messaging.sendExceptionMessage(event.getChannel(), "We have failed to process your guild data!", e);
+            guildData = message.data.join();
+        } catch (CompletionException | CancellationException e) {
+            Messaging.sendExceptionMessage(event.getChannel(), "We have failed to process your guild data!", e.getCause() == null ? e : e.getCause());
+            return;
+        }
+        if (guildData == null) {
+            // This should *hopefully* never happen but just in case :D
+            Messaging.sendExceptionMessage(event.getChannel(), "We have failed to process your guild data!",
+                    new IllegalStateException(String.format("Guild data for guild ID: %s is null!", event.getGuild().getId())));
+            return;
+        }
+        try {
+            handleMessage(event, guildData, message.receivedAt);
+        } catch (RuntimeException e) {
+            CascadeBot.LOGGER.error("Error while handling a message!", MDCException.from(e));
+        } finally {
+            CascadeBot.clearCascadeMDC();
+        }
+    }
+
+    private void handleMessage(GuildMessageReceivedEvent event, GuildData guildData, long receivedAt) {
+        String rawMessage = event.getMessage().getContentRaw();
+        // Messages that arrived while the guild was still loading couldn't be checked when they were received
+        if (!isPossibleCommand(rawMessage, guildData)) {
+            REJECTED_MESSAGES.inc();
             return;
         }
+        ACCEPTED_MESSAGES.inc();
+        CommandTrace trace = new CommandTrace(receivedAt);
+        trace.mark(CommandTrace.Stage.GUILD_DATA);
+
+        MDC.put("cascade.guild", event.getGuild().toString());
+        MDC.put("cascade.sender", event.getAuthor().toString());
+        MDC.put("cascade.shard_info", event.getJDA().getShardInfo().getShardString());
+        MDC.put("cascade.channel", event.getChannel().toString());
 
         String prefix = guildData.getCoreSettings().getPrefix();
         boolean isMention = false;
+        int commandStart;
 
-        String commandWithArgs;
-        String trigger;
-        String[] args;
-
-        if (message.startsWith(prefix)) {
-            commandWithArgs = message.substring(prefix.length()); // Remove prefix from command
-        } else if (guildData.getCoreSettings().isMentionPrefix() && message.startsWith(event.getJDA().getSelfUser().getAsMention())) {
-            commandWithArgs = message.substring(event.getJDA().getSelfUser().getAsMention().length()).trim();
+        if (rawMessage.startsWith(prefix)) {
+            commandStart = prefix.length();
+        } else if (guildData.getCoreSettings().isMentionPrefix() && rawMessage.startsWith(event.getJDA().getSelfUser().getAsMention())) {
+            commandStart = event.getJDA().getSelfUser().getAsMention().length();
             isMention = true;
-        } else if (message.startsWith(Config.INS.getDefaultPrefix() + Language.i18n(guildData.getLocale(), "commands.prefix.command")) && !Config.INS.getDefaultPrefix().equals(guildData.getCoreSettings().getPrefix())) {
-            commandWithArgs = message.substring(Config.INS.getDefaultPrefix().length());
+        } else if (rawMessage.startsWith(getDefaultPrefixCommand(guildData.getLocale())) && !Config.INS.getDefaultPrefix().equals(guildData.getCoreSettings().getPrefix())) {
+            commandStart = Config.INS.getDefaultPrefix().length();
         } else {
+            CascadeBot.clearCascadeMDC();
             return;
         }
 
         MDC.put("cascade.prefix", prefix);
         MDC.put("cascade.mention_prefix", String.valueOf(isMention));
 
-        trigger = commandWithArgs.split(" ")[0];
-        args = ArrayUtils.remove(commandWithArgs.split(" "), 0);
+        // The trigger has to follow a prefix straight away, so "; help" isn't a command. Mentions are usually followed by a space
+        if (!isMention && commandStart < rawMessage.length() && Character.isWhitespace(rawMessage.charAt(commandStart))) {
+            CascadeBot.clearCascadeMDC();
+            return;
+        }
+
+        CommandArgs tokens = CommandArgs.parse(rawMessage, commandStart);
+        if (tokens.isEmpty()) {
+            CascadeBot.clearCascadeMDC();
+            return;
+        }
+        String trigger = tokens.get(0);
+        CommandArgs args = tokens.skip(1);
 
         MDC.put("cascade.trigger", trigger);
-        MDC.put("cascade.args", Arrays.toString(args));
+        MDC.put("cascade.args", args.toString());
+        trace.mark(CommandTrace.Stage.PARSE);
 
         try {
-            processCommands(event, guildData, trigger, args, isMention);
+            processCommands(event, guildData, trigger, args, isMention, trace);
         } catch (Exception e) {
             Messaging.sendExceptionMessage(event.getChannel(), Language.i18n(guildData.getLocale(), "responses.failed_to_process_command"), e);
             return;
@@ -111,8 +218,33 @@ public class CommandListener extends ListenerAdapter {
         }
     }
 
-    private void processCommands(GuildMessageReceivedEvent event, GuildData guildData, String trigger, String[] args, boolean isMention) {
+    /**
+     * A cheap check on the raw message content to see whether it could be a command for this guild.
+     * This will never reject a message the full parsing would accept, but it may let through messages
+     * that turn out not to be commands.
+     *
+     * @param message   The raw content of the message.
+     * @param guildData The guild data for the guild the message was sent in.
+     * @return Whether the message may be a command and should be fully parsed.
+     */
+    private boolean isPossibleCommand(String message, GuildData guildData) {
+        if (message.startsWith(guildData.getCoreSettings().getPrefix())) {
+            return true;
+        }
+        // The exact mention is checked when the message is parsed, this just avoids building the mention string
+        if (guildData.getCoreSettings().isMentionPrefix() && message.startsWith("<@")) {
+            return true;
+        }
+        return message.startsWith(getDefaultPrefixCommand(guildData.getLocale()));
+    }
+
+    private String getDefaultPrefixCommand(Locale locale) {
+        return DEFAULT_PREFIX_COMMANDS.computeIfAbsent(locale, key -> Config.INS.getDefaultPrefix() + Language.i18n(key, "commands.prefix.command"));
+    }
+
+    private void processCommands(GuildMessageReceivedEvent event, GuildData guildData, String trigger, CommandArgs args, boolean isMention, CommandTrace trace) {
         ICommandMain cmd = CascadeBot.INS.getCommandManager().getCommand(trigger, guildData);
+        trace.mark(CommandTrace.Stage.LOOKUP);
         CommandContext context = new CommandContext(cmd, event.getJDA(), event.getChannel(), event.getMessage(), event.getGuild(), guildData, args, event.getMember(), trigger, isMention);
         if (cmd != null) {
             Metrics.INS.commandsSubmitted.labels(cmd.getClass().getSimpleName()).inc();
@@ -128,12 +260,12 @@ public class CommandListener extends ListenerAdapter {
             if (!isAuthorised(cmd, context)) {
                 return;
             }
-            if (args.length >= 1) {
-                if (processSubCommands(cmd, args, context)) {
+            if (!args.isEmpty()) {
+                if (processSubCommands(cmd, args, context, trace)) {
                     return;
                 }
             }
-            dispatchCommand(cmd, context);
+            dispatchCommand(cmd, context, trace);
         } else {
             if (guildData.getCoreSettings().isAllowTagCommands()) {
                 if (guildData.getCoreSettings().getTags().containsKey(trigger)) {
@@ -146,21 +278,32 @@ public class CommandListener extends ListenerAdapter {
         }
     }
 
-    private boolean processSubCommands(ICommandMain cmd, String[] args, CommandContext parentCommandContext) {
+    private boolean processSubCommands(ICommandMain cmd, CommandArgs args, CommandContext parentCommandContext, CommandTrace trace) {
         for (ICommandExecutable subCommand : cmd.getSubCommands()) {
-            if (subCommand.command().equalsIgnoreCase(args[0])) {
-                CommandContext subCommandContext = new CommandContext(subCommand, parentCommandContext.getJda(), parentCommandContext.getChannel(), parentCommandContext.getMessage(), parentCommandContext.getGuild(), parentCommandContext.getData(), ArrayUtils.remove(args, 0), parentCommandContext.getMember(), parentCommandContext.getTrigger() + " " + args[0], parentCommandContext.isMention());
+            if (subCommand.command().equalsIgnoreCase(args.get(0))) {
+                CommandContext subCommandContext = new CommandContext(subCommand, parentCommandContext.getJda(), parentCommandContext.getChannel(), parentCommandContext.getMessage(), parentCommandContext.getGuild(), parentCommandContext.getData(), args.skip(1), parentCommandContext.getMember(), parentCommandContext.getTrigger() + " " + args.get(0), parentCommandContext.isMention());
                 if (!isAuthorised(cmd, subCommandContext)) {
                     return false;
                 }
-                return dispatchCommand(subCommand, subCommandContext);
+                return dispatchCommand(subCommand, subCommandContext, trace);
             }
         }
         return false;
     }
 
-    private boolean dispatchCommand(final ICommandExecutable command, final CommandContext context) {
-        COMMAND_POOL.submit(() -> {
+    private boolean dispatchCommand(final ICommandExecutable command, final CommandContext context, final CommandTrace trace) {
+        RateLimitScope throttledScope = RATE_LIMITER.tryAcquire(command, context);
+        if (throttledScope != null) {
+            // We don't reply here as replying to someone flooding commands would only use up more of our rate limit
+            Metrics.INS.commandsThrottled.labels(command.getClass().getSimpleName(), throttledScope.name().toLowerCase()).inc();
+            CascadeBot.LOGGER.debug("Command {} from {} was throttled by the {} rate limit", command.command(), context.getUser().getAsTag(), throttledScope);
+            return true;
+        }
+        trace.setCommand(command.getClass().getSimpleName());
+        trace.mark(CommandTrace.Stage.AUTHORISE);
+        boolean queued = COMMAND_POOL.submit(context.getGuild().getIdLong(), () -> {
+            trace.mark(CommandTrace.Stage.QUEUE_WAIT);
+            trace.attach();
             MDC.put("cascade.sender", context.getMember().toString());
             MDC.put("cascade.guild", context.getGuild().toString());
             MDC.put("cascade.channel", context.getChannel().toString());
@@ -183,8 +326,14 @@ public class CommandListener extends ListenerAdapter {
             } finally {
                 CascadeBot.clearCascadeMDC();
                 commandTimer.observeDuration();
+                trace.finishExecution();
             }
         });
+        if (!queued) {
+            Metrics.INS.commandsRejected.labels(command.getClass().getSimpleName()).inc();
+            context.getTypedMessaging().replyWarning(context.i18n("responses.commands_busy"));
+            return true;
+        }
         deleteMessages(command, context);
         return true;
     }
@@ -218,5 +367,19 @@ public class CommandListener extends ListenerAdapter {
         COMMAND_POOL.shutdown();
     }
 
+    private static class WaitingMessage {
+
+        private final GuildMessageReceivedEvent event;
+        private final CompletableFuture<GuildData> data;
+        private final long receivedAt;
+
+        private WaitingMessage(GuildMessageReceivedEvent event, CompletableFuture<GuildData> data, long receivedAt) {
+            this.event = event;
+            this.data = data;
+            this.receivedAt = receivedAt;
+        }
+
+    }
+
 
 }
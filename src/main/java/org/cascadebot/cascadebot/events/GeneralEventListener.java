@@ -10,6 +10,10 @@ import net.dv8tion.jda.api.events.ReadyEvent;
 import net.dv8tion.jda.api.events.StatusChangeEvent;
 import net.dv8tion.jda.api.events.guild.GuildJoinEvent;
 import net.dv8tion.jda.api.events.guild.GuildLeaveEvent;
+import net.dv8tion.jda.api.events.guild.GuildReadyEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberLeaveEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleAddEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleRemoveEvent;
 import net.dv8tion.jda.api.events.role.RoleDeleteEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import net.dv8tion.jda.api.sharding.ShardManager;
@@ -18,14 +22,20 @@ import org.cascadebot.cascadebot.CascadeBot;
 import org.cascadebot.cascadebot.UnicodeConstants;
 import org.cascadebot.cascadebot.data.Config;
 import org.cascadebot.cascadebot.data.managers.GuildDataManager;
+import org.cascadebot.cascadebot.data.objects.GuildData;
 import org.cascadebot.cascadebot.messaging.MessageType;
+import org.cascadebot.cascadebot.permissions.PermissionsManager;
+import org.cascadebot.cascadebot.permissions.SecurityLevelIndex;
 import org.cascadebot.cascadebot.permissions.objects.Group;
 import org.cascadebot.cascadebot.utils.FormatUtils;
 
+import java.util.function.Consumer;
+
 public class GeneralEventListener extends ListenerAdapter {
 
     @Override
     public void onReady(ReadyEvent event) {
+        GuildDataManager.prewarm(event.getJDA());
         ShardManager shardManager = CascadeBot.INS.getShardManager();
         if (shardManager.getShards().size() == shardManager.getShardsTotal()) {
             CascadeBot.INS.run();
@@ -75,10 +85,66 @@ public class GeneralEventListener extends ListenerAdapter {
         }
     }
 
+    @Override
+    public void onGuildReady(GuildReadyEvent event) {
+        // The official server's members may not have been available when the levels were last worked out
+        if (isOfficial(event.getGuild())) {
+            updateSecurityLevels(SecurityLevelIndex::rebuild);
+        }
+    }
+
     @Override
     public void onRoleDelete(RoleDeleteEvent event) {
-        for (Group group : GuildDataManager.getGuildData(event.getGuild().getIdLong()).getPermissions().getGroups()) {
-            group.unlinkRole(event.getRole().getIdLong());
+        if (isOfficial(event.getGuild())) {
+            updateSecurityLevels(SecurityLevelIndex::rebuild);
+        }
+        GuildData data = GuildDataManager.getGuildData(event.getGuild().getIdLong());
+        boolean changed = false;
+        for (Group group : data.getPermissions().getGroups()) {
+            changed |= group.unlinkRole(event.getRole().getIdLong());
+        }
+        if (changed) {
+            data.markDirty();
+        }
+        data.getPermissions().invalidateCache();
+    }
+
+    @Override
+    public void onGuildMemberRoleAdd(GuildMemberRoleAddEvent event) {
+        updateSecurityLevels(levels -> levels.update(event.getMember()));
+        invalidatePermissions(event.getGuild().getIdLong(), event.getMember().getIdLong());
+    }
+
+    @Override
+    public void onGuildMemberRoleRemove(GuildMemberRoleRemoveEvent event) {
+        updateSecurityLevels(levels -> levels.update(event.getMember()));
+        invalidatePermissions(event.getGuild().getIdLong(), event.getMember().getIdLong());
+    }
+
+    @Override
+    public void onGuildMemberLeave(GuildMemberLeaveEvent event) {
+        if (isOfficial(event.getGuild())) {
+            updateSecurityLevels(levels -> levels.remove(event.getMember().getIdLong()));
+        }
+    }
+
+    private void updateSecurityLevels(Consumer<SecurityLevelIndex> update) {
+        // Shards can start sending events before the permissions manager exists, and nothing has been worked out then
+        PermissionsManager permissionsManager = CascadeBot.INS.getPermissionsManager();
+        if (permissionsManager != null) {
+            update.accept(permissionsManager.getSecurityLevels());
+        }
+    }
+
+    private boolean isOfficial(Guild guild) {
+        return guild.getIdLong() == Config.INS.getOfficialServerId();
+    }
+
+    private void invalidatePermissions(long guildId, long memberId) {
+        // Guilds that aren't loaded don't have anything cached
+        GuildData data = GuildDataManager.getLoadedGuildData(guildId);
+        if (data != null) {
+            data.getPermissions().invalidateCache(memberId);
         }
     }
 
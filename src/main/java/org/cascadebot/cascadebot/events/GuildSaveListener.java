@@ -18,9 +18,14 @@ public class GuildSaveListener implements RemovalListener<Long, GuildData> {
 
     @Override
     public void onRemoval(@Nullable Long aLong, @Nullable GuildData data, @Nonnull RemovalCause removalCause) {
-        if (aLong == null) return;
-        GuildDataManager.replace(aLong, data);
-        CascadeBot.LOGGER.debug("Guild with ID: {} was saved to the database as it was removed from the map due to: {}", aLong, removalCause.toString());
+        if (aLong == null || data == null) return;
+        // Explicit removals are for guilds that have been changed elsewhere, our copy is out of date so isn't saved
+        if (removalCause == RemovalCause.EXPLICIT) return;
+        // Guilds are only replaced with themselves when they are weighed again, so they are still cached
+        if (removalCause == RemovalCause.REPLACED) return;
+        // This is written with the next flush rather than straight away so mass expiries are batched together
+        GuildDataManager.markDirty(data);
+        CascadeBot.LOGGER.debug("Guild with ID: {} was queued to be saved to the database as it was removed from the map due to: {}", aLong, removalCause.toString());
         // TODO: FUTURE: Use this for statistics?
     }
 
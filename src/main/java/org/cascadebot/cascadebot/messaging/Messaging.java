@@ -25,6 +25,7 @@ import org.cascadebot.cascadebot.data.language.Locale;
 import org.cascadebot.cascadebot.data.managers.GuildDataManager;
 import org.cascadebot.cascadebot.data.objects.GuildData;
 import org.cascadebot.cascadebot.exceptions.DiscordPermissionException;
+import org.cascadebot.cascadebot.metrics.CommandTrace;
 import org.cascadebot.cascadebot.metrics.Metrics;
 import org.cascadebot.cascadebot.utils.FormatUtils;
 import org.cascadebot.cascadebot.utils.PasteUtils;
@@ -44,18 +45,18 @@ public final class Messaging {
         Checks.notNull(channel, "channel");
         Metrics.INS.messagesSent.labels(type.name()).inc();
         if (embed) {
-            return channel.sendMessage(MessagingObjects.getMessageTypeEmbedBuilder(type).setDescription(message).build()).submit();
+            return CommandTrace.trackReply(channel.sendMessage(MessagingObjects.getMessageTypeEmbedBuilder(type).setDescription(message).build()).submit());
         } else {
-            return channel.sendMessage(MessagingObjects.getMessageTypeMessageBuilder(type).append(message).build()).submit();
+            return CommandTrace.trackReply(channel.sendMessage(MessagingObjects.getMessageTypeMessageBuilder(type).append(message).build()).submit());
         }
     }
 
     public static CompletableFuture<Message> sendMessageTypeEmbedMessage(MessageChannel channel, MessageType type, EmbedBuilder builder, boolean embed) {
         Checks.notNull(channel, "channel");
         if (embed) {
-            return channel.sendMessage(builder.setColor(type.getColor()).build()).submit();
+            return CommandTrace.trackReply(channel.sendMessage(builder.setColor(type.getColor()).build()).submit());
         } else {
-            return channel.sendMessage(type.getEmoji() + " " + FormatUtils.formatEmbed(builder.build())).submit();
+            return CommandTrace.trackReply(channel.sendMessage(type.getEmoji() + " " + FormatUtils.formatEmbed(builder.build())).submit());
         }
     }
 
@@ -178,7 +179,7 @@ public final class Messaging {
             throw new DiscordPermissionException(Permission.MESSAGE_ADD_REACTION);
         }
 
-        CompletableFuture<Message> future = channel.sendMessage(message).submit();
+        CompletableFuture<Message> future = CommandTrace.trackReply(channel.sendMessage(message).submit());
         future.thenAccept((sentMessage -> {
             buttonGroup.addButtonsToMessage(sentMessage);
             GuildDataManager.getGuildData(sentMessage.getGuild().getIdLong()).addButtonGroup(channel, sentMessage, buttonGroup);
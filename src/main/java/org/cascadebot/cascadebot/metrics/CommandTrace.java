@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.metrics;
+
+import net.dv8tion.jda.api.requests.RestAction;
+import org.cascadebot.cascadebot.data.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records how long each stage of handling a command took, from the message being received to the reply being sent.
+ * <p>
+ * The trace is published to {@link Metrics#commandStageDuration} once the command has finished running and its
+ * first reply (if any) has been sent. Replies are picked up automatically if they are sent from the command thread.
+ */
+public class CommandTrace {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CommandTrace.class);
+
+    private static final ThreadLocal<CommandTrace> CURRENT = new ThreadLocal<>();
+
+    private final long[] stageNanos = new long[Stage.values().length];
+    private long lastMark;
+
+    private volatile String command = "unknown";
+    private final AtomicBoolean replyTracked = new AtomicBoolean(false);
+    // The execution of the command and the reply each hold one of these, the trace is published when both are done
+    private final AtomicInteger pending = new AtomicInteger(1);
+
+    public CommandTrace(long receivedAt) {
+        this.lastMark = receivedAt;
+    }
+
+    /**
+     * Records the time since the last mark against a stage.
+     *
+     * @param stage The stage that has just finished.
+     */
+    public void mark(Stage stage) {
+        long now = System.nanoTime();
+        stageNanos[stage.ordinal()] += now - lastMark;
+        lastMark = now;
+    }
+
+    public void setCommand(String command) {
+        this.command = command;
+    }
+
+    /**
+     * Sets this as the trace for the current thread so replies sent while running the command are tracked.
+     */
+    public void attach() {
+        CURRENT.set(this);
+    }
+
+    /**
+     * Marks the command as finished running. This clears the trace from the current thread.
+     */
+    public void finishExecution() {
+        mark(Stage.EXECUTION);
+        CURRENT.remove();
+        release();
+    }
+
+    private void trackReply(long sentAt, boolean success) {
+        if (success) {
+            stageNanos[Stage.REPLY.ordinal()] = System.nanoTime() - sentAt;
+        }
+        release();
+    }
+
+    private void release() {
+        if (pending.decrementAndGet() == 0) {
+            publish();
+        }
+    }
+
+    private void publish() {
+        long total = 0;
+        for (Stage stage : Stage.values()) {
+            long nanos = stageNanos[stage.ordinal()];
+            total += nanos;
+            Metrics.INS.commandStageDuration.labels(command, stage.getLabel()).observe(nanos / 1e9);
+        }
+        Metrics.INS.commandStageDuration.labels(command, "total").observe(total / 1e9);
+
+        long threshold = Config.INS.getSlowCommandThreshold();
+        if (threshold > 0 && TimeUnit.NANOSECONDS.toMillis(total) >= threshold) {
+            StringBuilder breakdown = new StringBuilder();
+            for (Stage stage : Stage.values()) {
+                if (breakdown.length() > 0) breakdown.append(", ");
+                breakdown.append(stage.getLabel()).append('=').append(TimeUnit.NANOSECONDS.toMillis(stageNanos[stage.ordinal()])).append("ms");
+            }
+            LOGGER.warn("Slow command {} took {}ms: {}", command, TimeUnit.NANOSECONDS.toMillis(total), breakdown);
+        }
+    }
+
+    /**
+     * Tracks a reply sent from the current thread, if a command is being traced on it.
+     * Only the first reply for a command is tracked.
+     *
+     * @param future The future for the reply's REST request.
+     * @param <T>    The type of the future.
+     * @return The same future that was passed in.
+     */
+    public static <T> CompletableFuture<T> trackReply(CompletableFuture<T> future) {
+        CommandTrace trace = claimReply();
+        if (trace != null) {
+            long sentAt = System.nanoTime();
+            future.whenComplete((result, throwable) -> trace.trackReply(sentAt, throwable == null));
+        }
+        return future;
+    }
+
+    /**
+     * Queues a reply, tracking it if it was sent from a thread with a command being traced on it.
+     * Failures are still passed to the default failure handler.
+     *
+     * @param action The rest action for the reply.
+     * @param <T>    The type the rest action returns.
+     */
+    public static <T> void queueReply(RestAction<T> action) {
+        CommandTrace trace = claimReply();
+        if (trace == null) {
+            action.queue();
+            return;
+        }
+        long sentAt = System.nanoTime();
+        action.queue(result -> trace.trackReply(sentAt, true), throwable -> {
+            trace.trackReply(sentAt, false);
+            RestAction.getDefaultFailure().accept(throwable);
+        });
+    }
+
+    private static CommandTrace claimReply() {
+        CommandTrace trace = CURRENT.get();
+        if (trace == null || !trace.replyTracked.compareAndSet(false, true)) return null;
+        trace.pending.incrementAndGet();
+        return trace;
+    }
+
+    public enum Stage {
+
+        /**
+         * Loading the guild data, either from the cache or the database.
+         */
+        GUILD_DATA("guild_data"),
+        /**
+         * Checking the prefix and normalising and splitting up the message.
+         */
+        PARSE("parse"),
+        /**
+         * Finding the command for the trigger.
+         */
+        LOOKUP("lookup"),
+        /**
+         * Module, permission and rate limit checks.
+         */
+        AUTHORISE("authorise"),
+        /**
+         * Waiting for a command thread to become free.
+         */
+        QUEUE_WAIT("queue_wait"),
+        /**
+         * Running the command itself.
+         */
+        EXECUTION("execution"),
+        /**
+         * The REST request for the first reply the command sent.
+         */
+        REPLY("reply");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+    }
+
+}
@@ -6,9 +6,10 @@
 package org.cascadebot.cascadebot.metrics;
 
 import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
 import io.prometheus.client.SimpleCollector;
 import io.prometheus.client.Summary;
-import io.prometheus.client.cache.caffeine.CacheMetricsCollector;
 import io.prometheus.client.exporter.HTTPServer;
 import io.prometheus.client.hotspot.DefaultExports;
 import org.cascadebot.cascadebot.CascadeBot;
@@ -35,11 +36,135 @@ public class Metrics {
             .help("The average execution time of commands")
             .labelNames("command")
             .register();
+    public Histogram commandStageDuration = Histogram.build()
+            .name("cascade_command_stage_duration_seconds")
+            .help("The time spent in each stage of handling a command, from receiving the message to sending the first reply")
+            .labelNames("command", "stage")
+            .buckets(0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30)
+            .register();
     public Counter commandsErrored = Counter.build()
             .name("cascade_commands_errored_total")
             .help("The number of commands that have errored out in this session")
             .labelNames("command")
             .register();
+    public Counter commandsRejected = Counter.build()
+            .name("cascade_commands_rejected_total")
+            .help("The number of commands rejected because the guild's command queue was full")
+            .labelNames("command")
+            .register();
+    public Counter commandsThrottled = Counter.build()
+            .name("cascade_commands_throttled_total")
+            .help("The number of commands that were not run because a rate limit was hit")
+            .labelNames("command", "scope")
+            .register();
+    public Gauge commandQueueDepth = Gauge.build()
+            .name("cascade_command_queue_depth")
+            .help("The number of commands waiting for a command worker")
+            .register();
+    public Summary commandQueueWaitTime = Summary.build()
+            .name("cascade_command_queue_wait_time_seconds")
+            .help("The time commands spend waiting for a command worker")
+            .register();
+    public Gauge commandWorkersActive = Gauge.build()
+            .name("cascade_command_workers_active")
+            .help("The number of command workers currently running a command")
+            .register();
+    public Counter messagesFiltered = Counter.build()
+            .name("cascade_command_listener_messages_total")
+            .help("The number of guild messages that were accepted or rejected as possible commands this session")
+            .labelNames("result")
+            .register();
+    public Gauge guildsDirty = Gauge.build()
+            .name("cascade_guilds_dirty")
+            .help("The number of guilds with changes waiting to be written to the database")
+            .register();
+    public Summary guildFlushLag = Summary.build()
+            .name("cascade_guild_flush_lag_seconds")
+            .help("The time between a guild first changing and it being written to the database")
+            .register();
+    public Summary guildFlushBatchSize = Summary.build()
+            .name("cascade_guild_flush_batch_size")
+            .help("The number of guilds written in each bulk write")
+            .register();
+    public Summary guildFlushDuration = Summary.build()
+            .name("cascade_guild_flush_duration_seconds")
+            .help("The time taken by each bulk write of guilds")
+            .register();
+    public Counter guildWrites = Counter.build()
+            .name("cascade_guild_writes_total")
+            .help("The number of guild flushes that sent an update, sent a whole replace or were skipped because nothing changed")
+            .labelNames("type")
+            .register();
+    public Counter guildWriteConflicts = Counter.build()
+            .name("cascade_guild_write_conflicts_total")
+            .help("The number of guild writes that weren't applied because the guild was changed by another process")
+            .register();
+    public Counter guildInvalidations = Counter.build()
+            .name("cascade_guild_invalidations_total")
+            .help("The number of cached guilds dropped because they were changed by another process")
+            .labelNames("source")
+            .register();
+    public Summary guildWeight = Summary.build()
+            .name("cascade_guild_weight_bytes")
+            .help("The estimated memory used by each cached guild, measured when it is loaded")
+            .quantile(0.5, 0.05)
+            .quantile(0.9, 0.01)
+            .quantile(0.99, 0.001)
+            .register();
+    public Counter guildSnapshotLoads = Counter.build()
+            .name("cascade_guild_snapshot_loads_total")
+            .help("The number of guild loads that used the local snapshot, didn't have one, or found it was out of date")
+            .labelNames("result")
+            .register();
+    public Counter guildFlushFailures = Counter.build()
+            .name("cascade_guild_flush_failures_total")
+            .help("The number of guild writes that failed and had to be retried")
+            .register();
+    public Gauge guildPrewarmDuration = Gauge.build()
+            .name("cascade_guild_prewarm_duration_seconds")
+            .help("The time taken to prewarm the guild data for each shard the last time it became ready")
+            .labelNames("shard")
+            .register();
+    public Counter guildsPrewarmed = Counter.build()
+            .name("cascade_guilds_prewarmed_total")
+            .help("The number of guilds loaded into the cache by prewarming")
+            .register();
+    public Histogram mongoCommandDuration = Histogram.build()
+            .name("cascade_mongo_command_duration_seconds")
+            .help("The time taken by each command sent to the database, including failed commands")
+            .labelNames("client", "command", "collection")
+            .buckets(0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10)
+            .register();
+    public Counter mongoCommandFailures = Counter.build()
+            .name("cascade_mongo_command_failures_total")
+            .help("The number of commands sent to the database that failed")
+            .labelNames("client", "command", "collection")
+            .register();
+    public Gauge mongoPoolConnections = Gauge.build()
+            .name("cascade_mongo_pool_connections")
+            .help("The number of open connections in each database connection pool")
+            .labelNames("client", "server")
+            .register();
+    public Gauge mongoPoolCheckedOut = Gauge.build()
+            .name("cascade_mongo_pool_checked_out")
+            .help("The number of connections currently in use from each database connection pool")
+            .labelNames("client", "server")
+            .register();
+    public Gauge mongoPoolWaitQueue = Gauge.build()
+            .name("cascade_mongo_pool_wait_queue")
+            .help("The number of operations waiting for a connection from each database connection pool")
+            .labelNames("client", "server")
+            .register();
+    public Gauge mongoPoolMaxSize = Gauge.build()
+            .name("cascade_mongo_pool_max_size")
+            .help("The maximum number of connections in each database connection pool")
+            .labelNames("client", "server")
+            .register();
+    public Counter permissionCacheRequests = Counter.build()
+            .name("cascade_permission_cache_requests_total")
+            .help("The number of permission checks that used a cached result or had to evaluate the guild's groups and users")
+            .labelNames("result")
+            .register();
     public Counter buttonsPressed = Counter.build()
             .name("cascade_buttons_pressed_total")
             .help("The number of buttons pressed in this session")
@@ -69,7 +194,7 @@ public class Metrics {
             .register();
 
 
-    public CacheMetricsCollector cacheMetrics = new CacheMetricsCollector().register();
+    public WeightedCacheMetricsCollector cacheMetrics = new WeightedCacheMetricsCollector().register();
 
     private BotMetricsCollector botMetricsCollector;
     private HTTPServer prometheusServer;
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.metrics;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
+import io.prometheus.client.GaugeMetricFamily;
+import io.prometheus.client.cache.caffeine.CacheMetricsCollector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The standard Caffeine cache metrics, plus the current and maximum weight of caches that are bounded by weight.
+ */
+@SuppressWarnings("rawtypes")
+public class WeightedCacheMetricsCollector extends CacheMetricsCollector {
+
+    private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+
+    @Override
+    public void addCache(String cacheName, Cache cache) {
+        super.addCache(cacheName, cache);
+        caches.put(cacheName, cache);
+    }
+
+    @Override
+    public void addCache(String cacheName, AsyncLoadingCache cache) {
+        super.addCache(cacheName, cache);
+        caches.put(cacheName, cache.synchronous());
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        List<MetricFamilySamples> metricFamilySamples = new ArrayList<>(super.collect());
+
+        GaugeMetricFamily weight = new GaugeMetricFamily("caffeine_cache_weighted_size", "The estimated total weight of the cache", List.of("cache"));
+        GaugeMetricFamily maxWeight = new GaugeMetricFamily("caffeine_cache_max_weight", "The weight the cache is bounded to", List.of("cache"));
+        for (Map.Entry<String, Cache> entry : caches.entrySet()) {
+            Optional<Policy.Eviction> eviction = entry.getValue().policy().eviction();
+            if (eviction.isEmpty() || !eviction.get().isWeighted()) continue;
+            List<String> labels = List.of(entry.getKey());
+            eviction.get().weightedSize().ifPresent(size -> weight.addMetric(labels, size));
+            maxWeight.addMetric(labels, eviction.get().getMaximum());
+        }
+        metricFamilySamples.add(weight);
+        metricFamilySamples.add(maxWeight);
+
+        return metricFamilySamples;
+    }
+
+}
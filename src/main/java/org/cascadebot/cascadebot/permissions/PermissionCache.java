@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.permissions;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import org.cascadebot.cascadebot.metrics.Metrics;
+import org.cascadebot.cascadebot.permissions.objects.Result;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * The results of evaluating a guild's groups and users for each member, so checking the same permission again
+ * doesn't have to find the member's groups and go through their permissions again.
+ * <p>
+ * Each member's results are kept along with the roles they had when they were evaluated, so they are evaluated
+ * again as soon as their roles change. Anything that changes the guild's groups, users or permission mode must
+ * call {@link #invalidateAll()}, which bumps the version and makes every member's results out of date.
+ */
+public class PermissionCache {
+
+    // Keeps big guilds from growing forever, only the members that are least likely to be used again are dropped
+    private static final int MAX_MEMBERS = 1000;
+
+    private final AtomicLong version = new AtomicLong();
+    private final Cache<Long, MemberResults> members = Caffeine.newBuilder().maximumSize(MAX_MEMBERS).build();
+
+    /**
+     * Gets the result of a permission for a member, evaluating it if it isn't cached.
+     *
+     * @param member     The member to get the result for.
+     * @param permission The permission to get the result for.
+     * @param evaluator  Evaluates the permission for the member when it isn't cached.
+     * @return The cached or newly evaluated result.
+     */
+    public Result get(Member member, CascadePermission permission, Function<CascadePermission, Result> evaluator) {
+        // Read the version before evaluating, so a change made while evaluating leaves the result out of date
+        long version = this.version.get();
+        long[] roleIds = getRoleIds(member);
+        MemberResults results = members.getIfPresent(member.getIdLong());
+        if (results == null || results.version != version || !Arrays.equals(results.roleIds, roleIds)) {
+            results = new MemberResults(version, roleIds);
+            members.put(member.getIdLong(), results);
+        }
+
+        Result result = results.results.get(permission);
+        if (result != null) {
+            Metrics.INS.permissionCacheRequests.labels("hit").inc();
+            return result;
+        }
+        Metrics.INS.permissionCacheRequests.labels("miss").inc();
+        result = evaluator.apply(permission);
+        results.results.put(permission, result);
+        return result;
+    }
+
+    /**
+     * Drops the results for a member, for when something about the member has changed.
+     *
+     * @param memberId The ID of the member.
+     */
+    public void invalidate(long memberId) {
+        members.invalidate(memberId);
+    }
+
+    /**
+     * Makes every cached result out of date.
+     */
+    public void invalidateAll() {
+        version.incrementAndGet();
+        members.invalidateAll();
+    }
+
+    private static long[] getRoleIds(Member member) {
+        List<Role> roles = member.getRoles();
+        long[] ids = new long[roles.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = roles.get(i).getIdLong();
+        }
+        // Roles are ordered by position, which can change without the member's roles changing
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    private static class MemberResults {
+
+        private final long version;
+        private final long[] roleIds;
+        private final Map<CascadePermission, Result> results = new ConcurrentHashMap<>();
+
+        private MemberResults(long version, long[] roleIds) {
+            this.version = version;
+            this.roleIds = roleIds;
+        }
+
+    }
+
+}
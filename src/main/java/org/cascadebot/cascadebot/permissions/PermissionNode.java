@@ -5,34 +5,124 @@
 
 package org.cascadebot.cascadebot.permissions;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Predicate;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
-// All credit to the FlareBot project for this file
+// All credit to the FlareBot project for the original version of this file
 // https://github.com/FlareBot/FlareBot/blob/master/src/main/java/stream/flarebot/flarebot/permissions/PermissionNode.java
-@AllArgsConstructor
+/**
+ * A permission that may contain wildcards, such as {@code queue.*} or {@code tag.*.edit}.
+ * <p>
+ * A {@code *} is a wildcard when it's the whole node, at the start followed by a {@code .}, between two
+ * {@code .}s, or at the end after a {@code .}. A wildcard at the start takes the {@code .} after it with it, so
+ * {@code *.save} matches {@code queuesave}. Each wildcard matches one or more characters other than line breaks,
+ * and any other {@code *} only matches itself. A node ending in {@code *} always needs at least one more character
+ * at the end.
+ * <p>
+ * The node is split into its literal parts once when it is created, so testing a permission is just a few
+ * {@link String#startsWith(String)}/{@link String#indexOf(String, int)} calls.
+ */
 @Getter
 public class PermissionNode implements Predicate<String> {
 
     private final String node;
 
+    // The text between the wildcards. The first part is anchored to the start and, unless there is a trailing
+    // wildcard, the last part is anchored to the end
+    private final String[] parts;
+    private final boolean trailingWildcard;
+    private final boolean matchAll;
+
+    public PermissionNode(String node) {
+        this.node = node;
+        this.parts = split(node);
+        this.trailingWildcard = node.endsWith("*");
+        this.matchAll = node.equals("*");
+    }
+
+    private static String[] split(String node) {
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        int length = node.length();
+        for (int i = 0; i < length; i++) {
+            if (node.charAt(i) != '*') continue;
+            if (i == 0) {
+                if (length > 1 && node.charAt(1) == '.') {
+                    parts.add("");
+                    start = 2;
+                    i = 1;
+                }
+            } else if (node.charAt(i - 1) == '.' && (isEnd(node, i + 1) || node.charAt(i + 1) == '.')) {
+                parts.add(node.substring(start, i));
+                start = i + 1;
+            }
+        }
+        if (parts.isEmpty()) {
+            return new String[]{node};
+        }
+        parts.add(node.substring(start));
+        // Empty parts at the end don't count, so "queue.*.*" is the same as "queue.*" followed by ".*"
+        int size = parts.size();
+        while (size > 0 && parts.get(size - 1).isEmpty()) {
+            size--;
+        }
+        return parts.subList(0, size).toArray(new String[0]);
+    }
+
+    // Whether the rest of the node from here would match $, which allows for one line break at the very end
+    private static boolean isEnd(String node, int from) {
+        int remaining = node.length() - from;
+        if (remaining == 0) return true;
+        if (remaining == 2) return node.charAt(from) == '\r' && node.charAt(from + 1) == '\n';
+        return remaining == 1 && isLineBreak(node.charAt(from));
+    }
+
     @Override
     public boolean test(String permission) {
-        if (getNode().equals("*"))
-            return true;
-        // It splits by a `*` that's on a start of a string or has . around them
-        String textNode = Arrays.stream(getNode().split("(?:^\\*(\\.))|(?:(?<=\\.)\\*(?=\\.))|(?:(?<=\\.)\\*$)"))
-                // Then it escapes all of that so its not regexps
-                .map(Pattern::quote)
-                // And then it joins them with a match all regexp
-                .collect(Collectors.joining(".+")) + (getNode().endsWith("*") ? ".+" : "");
-        // And then it lets Java REGEXP compare them. Ty @I-Al-Istannen for making me do this comment
-        return permission.matches(textNode);
+        if (matchAll) return true;
+        int count = parts.length;
+        if (count == 0) {
+            return trailingWildcard ? isWildcard(permission, 0, permission.length()) : permission.isEmpty();
+        }
+
+        String first = parts[0];
+        if (!permission.startsWith(first)) return false;
+        int position = first.length();
+
+        // Matching each middle part as early as possible leaves the most room for the rest
+        int floating = trailingWildcard ? count : count - 1;
+        for (int i = 1; i < floating; i++) {
+            if (position >= permission.length()) return false;
+            int index = permission.indexOf(parts[i], position + 1);
+            if (index < 0 || !isWildcard(permission, position, index)) return false;
+            position = index + parts[i].length();
+        }
+
+        if (trailingWildcard) {
+            return isWildcard(permission, position, permission.length());
+        }
+        if (count == 1) {
+            return permission.length() == position;
+        }
+        String last = parts[count - 1];
+        int lastStart = permission.length() - last.length();
+        return lastStart > position && permission.endsWith(last) && isWildcard(permission, position, lastStart);
+    }
+
+    // Whether the text between from and to can be matched by a wildcard
+    private static boolean isWildcard(String permission, int from, int to) {
+        if (to <= from) return false;
+        for (int i = from; i < to; i++) {
+            if (isLineBreak(permission.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private static boolean isLineBreak(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
     }
 
-}
\ No newline at end of file
+}
@@ -18,7 +18,6 @@ import org.cascadebot.cascadebot.commandmeta.Module;
 import org.cascadebot.cascadebot.data.language.Language;
 import org.cascadebot.cascadebot.data.language.Locale;
 import org.cascadebot.cascadebot.data.objects.GuildData;
-import org.cascadebot.cascadebot.utils.DiscordUtils;
 import org.cascadebot.shared.SecurityLevel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,6 +36,8 @@ public class PermissionsManager {
     private HashMap<String, CascadePermission> permissions = new HashMap<>();
     private Set<CascadePermission> defaultPermissions = Set.of();
 
+    private final SecurityLevelIndex securityLevels = new SecurityLevelIndex();
+
     public PermissionsManager() {
         for (Locale locale : Language.getLanguages().keySet()) {
             if (locale == Locale.getDefaultLocale()) continue;
@@ -161,7 +162,11 @@ public class PermissionsManager {
     }
 
     public SecurityLevel getUserSecurityLevel(long userId) {
-        return Security.getLevelById(userId, DiscordUtils.getAllOfficialRoleIds(userId));
+        return securityLevels.getLevel(userId);
+    }
+
+    public SecurityLevelIndex getSecurityLevels() {
+        return securityLevels;
     }
 
 }
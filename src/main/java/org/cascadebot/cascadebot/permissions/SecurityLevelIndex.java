@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.permissions;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import org.cascadebot.cascadebot.CascadeBot;
+import org.cascadebot.cascadebot.data.Config;
+import org.cascadebot.cascadebot.utils.DiscordUtils;
+import org.cascadebot.shared.SecurityLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The security level of every user that has one, so finding a user's level is a single lookup instead of going
+ * through their roles on the official server and every level's IDs.
+ * <p>
+ * The levels are worked out from the config's user and role IDs and the members of the official server. They are
+ * worked out again when the config is loaded again or the official server becomes ready. After that, single users
+ * are updated as their roles on the official server change.
+ */
+public class SecurityLevelIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SecurityLevelIndex.class);
+
+    private volatile Levels levels;
+
+    /**
+     * Gets the highest security level a user has.
+     *
+     * @param userId The ID of the user.
+     * @return The user's level, or {@code null} if they don't have one.
+     * @see Security#getLevelById(long, Set)
+     */
+    public SecurityLevel getLevel(long userId) {
+        return getLevels().users.get(userId);
+    }
+
+    /**
+     * Works out a member's level again after their roles on the official server have changed.
+     *
+     * @param member The member whose roles changed. Members of other guilds are ignored.
+     */
+    public void update(Member member) {
+        if (member.getGuild().getIdLong() != Config.INS.getOfficialServerId()) return;
+        put(getLevels(), member.getIdLong(), Security.getLevelById(member.getIdLong(), DiscordUtils.getAllRoleIds(member)));
+    }
+
+    /**
+     * Works out a user's level again after they have left the official server, so they only keep the level given
+     * to their user ID.
+     *
+     * @param userId The ID of the user.
+     */
+    public void remove(long userId) {
+        put(getLevels(), userId, Security.getLevelById(userId, Set.of()));
+    }
+
+    /**
+     * Works out every user's level again, for when the official server's roles or members may have changed without
+     * an event for each member.
+     */
+    public void rebuild() {
+        levels = build();
+    }
+
+    private Levels getLevels() {
+        Levels levels = this.levels;
+        if (levels == null || levels.config != Config.INS) {
+            levels = build();
+            this.levels = levels;
+        }
+        return levels;
+    }
+
+    private static Levels build() {
+        Config config = Config.INS;
+        Levels levels = new Levels(config);
+        Guild guild = getOfficialGuild(config);
+        // Levels are in ascending order, so merging keeps the highest level a user gets from any of their IDs
+        for (SecurityLevel level : SecurityLevel.values()) {
+            for (long id : Security.getIds(level)) {
+                Role role = guild == null ? null : guild.getRoleById(id);
+                if (role == null) {
+                    levels.users.merge(id, level, SecurityLevelIndex::highest);
+                    continue;
+                }
+                for (Member member : guild.getMembersWithRoles(role)) {
+                    levels.users.merge(member.getIdLong(), level, SecurityLevelIndex::highest);
+                }
+            }
+        }
+        LOGGER.debug("Found {} users with a security level{}", levels.users.size(), guild == null ? ", the official server isn't available yet" : "");
+        return levels;
+    }
+
+    private static Guild getOfficialGuild(Config config) {
+        // The levels can be needed before the shards have started, in which case only user IDs are used
+        if (config.getOfficialServerId() == -1 || CascadeBot.INS.getShardManager() == null) return null;
+        return DiscordUtils.getOfficialGuild();
+    }
+
+    private static SecurityLevel highest(SecurityLevel first, SecurityLevel second) {
+        return first.ordinal() >= second.ordinal() ? first : second;
+    }
+
+    private static void put(Levels levels, long userId, SecurityLevel level) {
+        if (level == null) {
+            levels.users.remove(userId);
+        } else {
+            levels.users.put(userId, level);
+        }
+    }
+
+    private static class Levels {
+
+        // The config the levels were worked out from, so a new config can be noticed
+        private final Config config;
+        private final Map<Long, SecurityLevel> users = new ConcurrentHashMap<>();
+
+        private Levels(Config config) {
+            this.config = config;
+        }
+
+    }
+
+}
@@ -5,7 +5,7 @@
 
 package org.cascadebot.cascadebot.permissions.objects;
 
-import com.google.common.collect.Sets;
+import de.bild.codec.annotations.Transient;
 import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -14,7 +14,10 @@ import lombok.Setter;
 import lombok.ToString;
 import org.apache.commons.lang3.RandomStringUtils;
 
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.function.Consumer;
 
 @ToString(callSuper = true)
 @EqualsAndHashCode(callSuper = true)
@@ -30,22 +33,46 @@ public class Group extends PermissionHolder {
     @Setter
     private String name;
 
-    private Set<Long> roleIds = Sets.newConcurrentHashSet();
+    // Replaced rather than changed in place, like the permissions
+    private volatile Set<Long> roleIds = new LinkedHashSet<>();
+
+    // Whether roleIds has been replaced by an unmodifiable copy since it was loaded
+    @Transient
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private volatile boolean roleIdsPublished;
 
     public Group(String name) {
         this.name = name;
     }
 
     public boolean linkRole(long roleId) {
-        return roleIds.add(roleId);
+        return changed(updateRoleIds(roleIds -> roleIds.add(roleId)));
     }
 
     public boolean unlinkRole(long roleId) {
-        return roleIds.remove(roleId);
+        return changed(updateRoleIds(roleIds -> roleIds.remove(roleId)));
+    }
+
+    private synchronized boolean updateRoleIds(Consumer<Set<Long>> change) {
+        Set<Long> current = getRoleIds();
+        Set<Long> updated = new LinkedHashSet<>(current);
+        change.accept(updated);
+        if (updated.equals(current)) return false;
+        roleIds = Collections.unmodifiableSet(updated);
+        return true;
     }
 
     public Set<Long> getRoleIds() {
-        return Set.copyOf(roleIds);
+        if (!roleIdsPublished) {
+            synchronized (this) {
+                if (!roleIdsPublished) {
+                    roleIds = Collections.unmodifiableSet(new LinkedHashSet<>(roleIds == null ? Set.of() : roleIds));
+                    roleIdsPublished = true;
+                }
+            }
+        }
+        return roleIds;
     }
 
     @Override
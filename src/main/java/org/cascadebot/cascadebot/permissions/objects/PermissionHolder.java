@@ -1,46 +1,138 @@
 package org.cascadebot.cascadebot.permissions.objects;
 
-import com.google.common.collect.Sets;
+import de.bild.codec.annotations.Transient;
 import lombok.EqualsAndHashCode;
+import lombok.Setter;
 import lombok.ToString;
 import org.cascadebot.cascadebot.permissions.CascadePermission;
 import org.cascadebot.cascadebot.permissions.PermissionNode;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 @ToString
 @EqualsAndHashCode
 public abstract class PermissionHolder {
 
-    private Set<String> permissions = Sets.newConcurrentHashSet();
+    // Never changed in place, changes replace it with a new set so it can be read without copying or locking
+    private volatile Set<String> permissions = new LinkedHashSet<>();
+
+    // The compiled form of permissions, built when they are first read after being loaded and whenever they change
+    @Transient
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private volatile Snapshot snapshot;
+
+    // Run after anything that changes how this holder evaluates permissions
+    @Transient
+    @Setter
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private volatile Runnable changeListener;
 
     abstract HolderType getType();
 
     public Set<String> getPermissions() {
-        return Set.copyOf(permissions);
+        return getSnapshot().permissions;
     }
 
     public boolean addPermission(String permission) {
-        return permissions.add(permission);
+        return changed(update(permissions -> permissions.add(permission)));
     }
 
     public boolean removePermission(String permission) {
-        return permissions.remove(permission);
+        return changed(update(permissions -> permissions.remove(permission)));
     }
 
-    public Result evaluatePermission(CascadePermission permission) {
-        for (String perm : getPermissions()) {
-            if (new PermissionNode(perm.substring(perm.startsWith("-") ? 1 : 0)).test(permission.getPermissionRaw())) {
-                if (perm.startsWith("-"))
-                    return Result.of(PermissionAction.DENY, this);
-                return Result.of(PermissionAction.ALLOW, this);
+    private synchronized boolean update(Consumer<Set<String>> change) {
+        Set<String> current = getSnapshot().permissions;
+        Set<String> updated = new LinkedHashSet<>(current);
+        change.accept(updated);
+        if (updated.equals(current)) return false;
+        publish(updated);
+        return true;
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot snapshot = this.snapshot;
+        if (snapshot == null) {
+            synchronized (this) {
+                snapshot = this.snapshot;
+                if (snapshot == null) {
+                    // The set loaded from the database is mutable, so it's replaced by the snapshot's copy
+                    snapshot = publish(permissions == null ? Set.of() : permissions);
+                }
             }
         }
-        return Result.of(PermissionAction.NEUTRAL, this);
+        return snapshot;
+    }
+
+    private Snapshot publish(Set<String> permissions) {
+        Snapshot snapshot = new Snapshot(this, permissions);
+        this.permissions = snapshot.permissions;
+        this.snapshot = snapshot;
+        return snapshot;
+    }
+
+    boolean changed(boolean changed) {
+        Runnable listener = changeListener;
+        if (changed && listener != null) {
+            listener.run();
+        }
+        return changed;
+    }
+
+    public Result evaluatePermission(CascadePermission permission) {
+        Snapshot snapshot = getSnapshot();
+        String raw = permission.getPermissionRaw();
+        // Denies are checked first, so a permission that is both allowed and denied is always denied
+        for (PermissionNode node : snapshot.denied) {
+            if (node.test(raw)) return snapshot.deny;
+        }
+        for (PermissionNode node : snapshot.allowed) {
+            if (node.test(raw)) return snapshot.allow;
+        }
+        return snapshot.neutral;
     }
 
     enum HolderType {
         GROUP, USER
     }
 
+    private static class Snapshot {
+
+        private final Set<String> permissions;
+        private final PermissionNode[] denied;
+        private final PermissionNode[] allowed;
+
+        // Results don't change, so each holder only needs one of each
+        private final Result allow;
+        private final Result deny;
+        private final Result neutral;
+
+        private Snapshot(PermissionHolder holder, Set<String> permissions) {
+            // Keeps the order the permissions were loaded or added in, so saving them doesn't reorder them
+            this.permissions = Collections.unmodifiableSet(new LinkedHashSet<>(permissions));
+            List<PermissionNode> denied = new ArrayList<>();
+            List<PermissionNode> allowed = new ArrayList<>();
+            for (String permission : this.permissions) {
+                if (permission.startsWith("-")) {
+                    denied.add(new PermissionNode(permission.substring(1)));
+                } else {
+                    allowed.add(new PermissionNode(permission));
+                }
+            }
+            this.denied = denied.toArray(new PermissionNode[0]);
+            this.allowed = allowed.toArray(new PermissionNode[0]);
+            this.allow = Result.of(PermissionAction.ALLOW, holder);
+            this.deny = Result.of(PermissionAction.DENY, holder);
+            this.neutral = Result.of(PermissionAction.NEUTRAL, holder);
+        }
+
+    }
+
 }
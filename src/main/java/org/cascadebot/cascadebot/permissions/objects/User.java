@@ -18,11 +18,11 @@ public class User extends PermissionHolder {
     private final Set<String> groups = Sets.newConcurrentHashSet();
 
     public boolean addGroup(Group group) {
-        return groups.add(group.getId());
+        return changed(groups.add(group.getId()));
     }
 
     public boolean removeGroup(Group group) {
-        return groups.remove(group.getId());
+        return changed(groups.remove(group.getId()));
     }
 
     public Set<String> getGroupIds() {
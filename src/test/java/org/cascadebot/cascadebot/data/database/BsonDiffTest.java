@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.data.database;
+
+import com.mongodb.MongoClientSettings;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class BsonDiffTest {
+
+    @Test
+    public void testUnchanged() {
+        BsonDocument document = BsonDocument.parse("{_id: 1, prefix: ';', settings: {embeds: true}, flags: ['A', 'B']}");
+        assertTrue(BsonDiff.diff(document, document.clone(), Set.of()).isEmpty());
+    }
+
+    @Test
+    public void testTopLevelFields() {
+        assertRoundTrip("{_id: 1, prefix: ';', locale: 'en', old: 5}",
+                "{_id: 1, prefix: '!', locale: 'en', added: {a: 1}}");
+    }
+
+    @Test
+    public void testNestedDocuments() {
+        assertRoundTrip("{_id: 1, core: {prefix: ';', tags: {hi: {content: 'hello', category: 'tag'}, bye: {content: 'bye'}}}}",
+                "{_id: 1, core: {prefix: ';', tags: {hi: {content: 'hey', category: 'tag'}, new: {content: 'new'}}, mention: true}}");
+    }
+
+    @Test
+    public void testRemovedFields() {
+        assertRoundTrip("{_id: 1, a: 1, b: {c: 2, d: {e: 3, f: 4}}, g: [1, 2]}",
+                "{_id: 1, b: {d: {f: 4}}}");
+    }
+
+    @Test
+    public void testAppendedArray() {
+        String before = "{_id: 1, todo: {items: [{text: 'one', done: true}, {text: 'two', done: false}]}}";
+        String after = "{_id: 1, todo: {items: [{text: 'one', done: true}, {text: 'two', done: false}, {text: 'three', done: false}]}}";
+        List<Bson> updates = assertRoundTrip(before, after);
+        assertEquals(1, updates.size());
+        assertTrue(render(updates.get(0)).containsKey("$push"));
+    }
+
+    @Test
+    public void testChangedArrayElements() {
+        assertRoundTrip("{_id: 1, groups: [{name: 'a', permissions: ['x']}, {name: 'b', permissions: ['y', 'z']}]}",
+                "{_id: 1, groups: [{name: 'a', permissions: ['x', 'w']}, {name: 'c', permissions: ['y']}]}");
+    }
+
+    @Test
+    public void testShrunkArray() {
+        assertRoundTrip("{_id: 1, users: [1, 2, 3]}", "{_id: 1, users: [3]}");
+    }
+
+    @Test
+    public void testReorderedSet() {
+        // Sets are encoded in iteration order, which can change without the contents changing
+        assertRoundTrip("{_id: 1, enabledFlags: ['MUSIC', 'BETA', 'PREMIUM'], roleIds: [{$numberLong: '5'}, {$numberLong: '7'}]}",
+                "{_id: 1, enabledFlags: ['PREMIUM', 'MUSIC', 'BETA'], roleIds: [{$numberLong: '7'}, {$numberLong: '5'}]}");
+    }
+
+    @Test
+    public void testKeysThatAreNotPaths() {
+        List<Bson> updates = assertRoundTrip("{_id: 1, commandInfo: {'org.cascadebot.A': {enabled: true}, 'org.cascadebot.B': {enabled: true}}}",
+                "{_id: 1, commandInfo: {'org.cascadebot.A': {enabled: false}, 'org.cascadebot.B': {enabled: true}}}");
+        assertEquals(1, updates.size());
+    }
+
+    @Test
+    public void testIgnoredFields() {
+        BsonDocument before = BsonDocument.parse("{_id: 1, stateLock: 'a', prefix: ';'}");
+        BsonDocument after = BsonDocument.parse("{_id: 1, stateLock: 'b', prefix: ';'}");
+        assertTrue(BsonDiff.diff(before, after, Set.of("stateLock")).isEmpty());
+    }
+
+    private static List<Bson> assertRoundTrip(String beforeJson, String afterJson) {
+        BsonDocument before = BsonDocument.parse(beforeJson);
+        BsonDocument after = BsonDocument.parse(afterJson);
+        List<Bson> updates = BsonDiff.diff(before, after, Set.of());
+        assertEquals(after, apply(before, updates));
+        return updates;
+    }
+
+    private static BsonDocument render(Bson update) {
+        return update.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+    }
+
+    // Applies the operators BsonDiff uses the same way the database would
+    private static BsonDocument apply(BsonDocument document, List<Bson> updates) {
+        BsonDocument result = document.clone();
+        for (Bson update : updates) {
+            for (Map.Entry<String, BsonValue> operator : render(update).entrySet()) {
+                for (Map.Entry<String, BsonValue> field : operator.getValue().asDocument().entrySet()) {
+                    String[] path = field.getKey().split("\\.");
+                    BsonValue parent = result;
+                    for (int i = 0; i < path.length - 1; i++) {
+                        parent = getChild(parent, path[i]);
+                    }
+                    String last = path[path.length - 1];
+                    switch (operator.getKey()) {
+                        case "$set":
+                            if (parent.isArray()) {
+                                parent.asArray().set(Integer.parseInt(last), field.getValue());
+                            } else {
+                                parent.asDocument().put(last, field.getValue());
+                            }
+                            break;
+                        case "$unset":
+                            parent.asDocument().remove(last);
+                            break;
+                        case "$push":
+                            getChild(parent, last).asArray().addAll(field.getValue().asDocument().getArray("$each").getValues());
+                            break;
+                        default:
+                            fail("Unexpected update operator " + operator.getKey());
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static BsonValue getChild(BsonValue parent, String key) {
+        return parent.isArray() ? parent.asArray().get(Integer.parseInt(key)) : parent.asDocument().get(key);
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.data.database;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GuildSnapshotStoreTest {
+
+    // Marker, guild ID and length
+    private static final int HEADER_SIZE = 16;
+
+    private Path directory;
+    private Path file;
+
+    @BeforeEach
+    public void createFile() throws IOException {
+        directory = Files.createTempDirectory("snapshots");
+        file = directory.resolve("guilds.snapshots");
+    }
+
+    @AfterEach
+    public void deleteFile() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testPutAndGet() throws IOException {
+        GuildSnapshotStore store = new GuildSnapshotStore(file, Long.MAX_VALUE);
+        store.put(1, guild(1, "a"));
+        store.put(2, guild(2, "b"));
+        store.put(1, guild(1, "c"));
+
+        assertEquals(guild(1, "c"), store.get(1));
+        assertEquals(guild(2, "b"), store.get(2));
+        assertNull(store.get(3));
+        store.close();
+
+        store = new GuildSnapshotStore(file, Long.MAX_VALUE);
+        assertEquals(guild(1, "c"), store.get(1));
+        assertEquals(guild(2, "b"), store.get(2));
+        store.close();
+    }
+
+    @Test
+    public void testRemove() throws IOException {
+        GuildSnapshotStore store = new GuildSnapshotStore(file, Long.MAX_VALUE);
+        store.put(1, guild(1, "a"));
+        store.put(2, guild(2, "b"));
+        store.remove(1);
+        assertNull(store.get(1));
+        assertEquals(guild(2, "b"), store.get(2));
+        store.close();
+
+        store = new GuildSnapshotStore(file, Long.MAX_VALUE);
+        assertNull(store.get(1));
+        assertEquals(guild(2, "b"), store.get(2));
+
+        // Saving it again after a removal brings it back
+        store.put(1, guild(1, "d"));
+        assertEquals(guild(1, "d"), store.get(1));
+        store.close();
+    }
+
+    @Test
+    public void testTruncatesHalfWrittenRecord() throws IOException {
+        GuildSnapshotStore store = new GuildSnapshotStore(file, Long.MAX_VALUE);
+        store.put(1, guild(1, "a"));
+        store.put(2, guild(2, "b"));
+        store.close();
+        long complete = Files.size(file);
+
+        // A header saying a long record follows, but only part of it was written
+        RawBsonDocument partial = guild(3, "partly written");
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + 10);
+        record.putInt(0x43425331).putLong(3).putInt(partial.getByteBuffer().remaining());
+        record.put(partial.getByteBuffer().asNIO().limit(10)).flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.APPEND)) {
+            channel.write(record);
+        }
+
+        store = new GuildSnapshotStore(file, Long.MAX_VALUE);
+        assertEquals(complete, Files.size(file));
+        assertEquals(guild(1, "a"), store.get(1));
+        assertEquals(guild(2, "b"), store.get(2));
+        assertNull(store.get(3));
+
+        // New records go where the broken one was
+        store.put(3, guild(3, "c"));
+        store.close();
+        store = new GuildSnapshotStore(file, Long.MAX_VALUE);
+        assertEquals(guild(3, "c"), store.get(3));
+        store.close();
+    }
+
+    @Test
+    public void testCompactsOnOpen() throws IOException {
+        GuildSnapshotStore store = new GuildSnapshotStore(file, Long.MAX_VALUE);
+        for (int i = 0; i < 10; i++) {
+            store.put(1, guild(1, "version " + i));
+        }
+        store.put(2, guild(2, "b"));
+        store.put(3, guild(3, "c"));
+        store.remove(3);
+        store.close();
+
+        store = new GuildSnapshotStore(file, Long.MAX_VALUE);
+        assertEquals(recordSize(guild(1, "version 9")) + recordSize(guild(2, "b")), Files.size(file));
+        assertEquals(guild(1, "version 9"), store.get(1));
+        assertEquals(guild(2, "b"), store.get(2));
+        assertNull(store.get(3));
+        store.close();
+    }
+
+    @Test
+    public void testCompactsWhenFull() throws IOException {
+        long maxSize = 4 * recordSize(guild(1, "version 0"));
+        GuildSnapshotStore store = new GuildSnapshotStore(file, maxSize);
+        store.put(2, guild(2, "version 0"));
+        for (int i = 0; i < 20; i++) {
+            store.put(1, guild(1, "version " + (i % 10)));
+            assertTrue(Files.size(file) <= maxSize);
+        }
+        assertEquals(guild(1, "version 9"), store.get(1));
+        assertEquals(guild(2, "version 0"), store.get(2));
+        store.close();
+
+        store = new GuildSnapshotStore(file, maxSize);
+        assertEquals(guild(1, "version 9"), store.get(1));
+        assertEquals(guild(2, "version 0"), store.get(2));
+        store.close();
+    }
+
+    private static RawBsonDocument guild(long id, String prefix) {
+        BsonDocument document = BsonDocument.parse("{prefix: '" + prefix + "', settings: {embeds: true}}");
+        document.put("_id", new BsonInt64(id));
+        return new RawBsonDocument(document, new BsonDocumentCodec());
+    }
+
+    private static long recordSize(RawBsonDocument document) {
+        return HEADER_SIZE + document.getByteBuffer().remaining();
+    }
+
+}
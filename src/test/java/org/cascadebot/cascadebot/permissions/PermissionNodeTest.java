@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2019 CascadeBot. All rights reserved.
+ * Licensed under the MIT license.
+ */
+
+package org.cascadebot.cascadebot.permissions;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PermissionNodeTest {
+
+    @Test
+    public void testExactNode() {
+        assertTrue(new PermissionNode("queue.save").test("queue.save"));
+        assertFalse(new PermissionNode("queue.save").test("queue.saved"));
+        assertFalse(new PermissionNode("queue.save").test("queue"));
+        assertTrue(new PermissionNode("").test(""));
+        assertFalse(new PermissionNode("").test("queue"));
+    }
+
+    @Test
+    public void testMatchAll() {
+        assertTrue(new PermissionNode("*").test("queue.save"));
+        assertTrue(new PermissionNode("*").test(""));
+    }
+
+    @Test
+    public void testTrailingWildcard() {
+        assertTrue(new PermissionNode("queue.*").test("queue.save"));
+        assertTrue(new PermissionNode("queue.*").test("queue.save.all"));
+        assertFalse(new PermissionNode("queue.*").test("queue."));
+        assertFalse(new PermissionNode("queue.*").test("queue"));
+        assertFalse(new PermissionNode("queue.*").test("queue.save\nall"));
+        // Only a * after a . is a wildcard, but a node ending in * always needs something after it
+        assertTrue(new PermissionNode("queue*").test("queue*a"));
+        assertFalse(new PermissionNode("queue*").test("queue*"));
+        assertFalse(new PermissionNode("queue*").test("queues"));
+    }
+
+    @Test
+    public void testLeadingWildcard() {
+        assertTrue(new PermissionNode("*.save").test("queue.save"));
+        // The . after a leading wildcard is part of the wildcard
+        assertTrue(new PermissionNode("*.save").test("queuesave"));
+        assertFalse(new PermissionNode("*.save").test("save"));
+        assertFalse(new PermissionNode("*.save").test("queue.saved"));
+    }
+
+    @Test
+    public void testMiddleWildcard() {
+        assertTrue(new PermissionNode("tag.*.edit").test("tag.name.edit"));
+        assertTrue(new PermissionNode("tag.*.edit").test("tag.a.edit.b.edit"));
+        assertFalse(new PermissionNode("tag.*.edit").test("tag..edit"));
+        assertFalse(new PermissionNode("tag.*.edit").test("tag.name.delete"));
+        assertTrue(new PermissionNode("a.*.*.d").test("a.b.c.d"));
+        assertFalse(new PermissionNode("a.*.*.d").test("a.b.d"));
+        assertTrue(new PermissionNode("*.*").test("queue"));
+        assertFalse(new PermissionNode("*.*").test(""));
+    }
+
+    @Test
+    public void testLiteralStar() {
+        assertTrue(new PermissionNode("tag.a*b").test("tag.a*b"));
+        assertFalse(new PermissionNode("tag.a*b").test("tag.axb"));
+    }
+
+}